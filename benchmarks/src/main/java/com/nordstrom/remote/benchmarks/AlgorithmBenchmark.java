@@ -0,0 +1,94 @@
+package com.nordstrom.remote.benchmarks;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jcraft.jsch.ChannelExec;
+import com.nordstrom.remote.RemoteConfig.RemoteSettings;
+import com.nordstrom.remote.SshUtils;
+import com.nordstrom.remote.SshUtils.ChannelType;
+import com.nordstrom.remote.SshUtils.SessionHolder;
+import com.nordstrom.remote.TransferOptions;
+import com.nordstrom.remote.TransferResult;
+
+/**
+ * Measures handshake time and bulk SFTP transfer time for each algorithm profile. The handshake covers TCP
+ * connection, key exchange, and authentication; divide the file size by the reported transfer time for throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class AlgorithmBenchmark {
+
+    private static final String FILE_NAME = "algorithm-bench.bin";
+
+    @Param({ "default", "throughput", "low-latency-handshake", "compat" })
+    public String profile;
+
+    @Param({ "16777216" })
+    public int size;
+
+    private Path localDir;
+    private Path localFile;
+    private Path downloadDir;
+    private String remoteFile;
+
+    @Setup(Level.Trial)
+    public void setUp(EmbeddedServer server) throws IOException {
+        System.setProperty(RemoteSettings.SSH_ALGORITHM_PROFILE.key(), profile);
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        localDir = Files.createTempDirectory("algorithm-bench");
+        localFile = Files.write(localDir.resolve(FILE_NAME), content);
+        downloadDir = Files.createDirectory(localDir.resolve("download"));
+        Files.write(server.getRemoteRoot().resolve(FILE_NAME), content);
+        remoteFile = server.getUri() + "/" + FILE_NAME;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.clearProperty(RemoteSettings.SSH_ALGORITHM_PROFILE.key());
+        Files.deleteIfExists(downloadDir.resolve(FILE_NAME));
+        Files.deleteIfExists(downloadDir);
+        Files.deleteIfExists(localFile);
+        Files.deleteIfExists(localDir);
+    }
+
+    @Benchmark
+    public void handshake(EmbeddedServer server) {
+        try (SessionHolder<ChannelExec> session = new SessionHolder<>(ChannelType.EXEC, URI.create(server.getUri()))) {
+            // connecting the session is the work being measured
+        }
+    }
+
+    @Benchmark
+    public TransferResult upload(EmbeddedServer server) {
+        return SshUtils.sftp(localFile.toUri().toString(), server.getUri(), new TransferOptions());
+    }
+
+    @Benchmark
+    public TransferResult download() {
+        return SshUtils.sftp(remoteFile, downloadDir.toUri().toString(), new TransferOptions());
+    }
+}
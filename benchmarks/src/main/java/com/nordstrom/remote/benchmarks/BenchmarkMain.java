@@ -0,0 +1,47 @@
+package com.nordstrom.remote.benchmarks;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * This is the entry point of the benchmark JAR. It accepts the standard JMH command line options, but writes results
+ * as JSON to <i>jmh-result.json</i> unless another result format or file is specified, so results from different
+ * releases can be compared (e.g. - with <a href="https://jmh.morethan.net">JMH Visualizer</a>).
+ */
+public final class BenchmarkMain {
+
+    static final String RESULT_FILE = "jmh-result.json";
+
+    private BenchmarkMain() {
+        throw new AssertionError("BenchmarkMain is a static utility class that cannot be instantiated");
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException, IOException {
+        CommandLineOptions cmdOptions = new CommandLineOptions(args);
+        if (cmdOptions.shouldHelp()) {
+            cmdOptions.showHelp();
+            return;
+        }
+        if (cmdOptions.shouldList() || cmdOptions.shouldListWithParams() || cmdOptions.shouldListProfilers()
+                || cmdOptions.shouldListResultFormats()) {
+            // listing is handled by the standard JMH entry point
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent(cmdOptions);
+        if (!cmdOptions.getResultFormat().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON);
+        }
+        if (!cmdOptions.getResult().hasValue()) {
+            builder.result(RESULT_FILE);
+        }
+        new Runner(builder.build()).run();
+    }
+}
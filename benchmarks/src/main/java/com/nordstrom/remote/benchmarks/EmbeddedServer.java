@@ -0,0 +1,237 @@
+package com.nordstrom.remote.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+
+import org.apache.sshd.common.file.virtualfs.VirtualFileSystemFactory;
+import org.apache.sshd.common.keyprovider.KeyPairProvider;
+import org.apache.sshd.core.CoreModuleProperties;
+import org.apache.sshd.server.Environment;
+import org.apache.sshd.server.ExitCallback;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.channel.ChannelSession;
+import org.apache.sshd.server.command.Command;
+import org.apache.sshd.server.shell.ProcessShellFactory;
+import org.apache.sshd.sftp.server.SftpSubsystemFactory;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.jcraft.jsch.Buffer;
+import com.jcraft.jsch.JSch;
+import com.nordstrom.remote.RemoteConfig.RemoteSettings;
+
+/**
+ * This JMH state starts an embedded Apache SSHD server on an ephemeral port for the duration of a benchmark trial.
+ * The server authenticates a generated client key, runs {@code exec} commands and shells with {@code /bin/sh} in a
+ * temporary "remote" root folder, and serves that folder via SFTP. The client key and a matching
+ * <i>known_hosts</i> file are installed through the <b>SSH_KEY_NAME</b> setting.
+ */
+@State(Scope.Benchmark)
+public class EmbeddedServer {
+
+    static final String USER = "bench";
+    static final String PASS = "password123";
+
+    private SshServer sshd;
+    private Path remoteRoot;
+    private Path identityDir;
+    private PublicKey clientPublicKey;
+
+    /**
+     * Start the embedded server.
+     *
+     * @throws Exception if the server fails to start
+     */
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        KeyPairGenerator hostGen = KeyPairGenerator.getInstance("RSA");
+        hostGen.initialize(2048);
+        KeyPair hostPair = hostGen.generateKeyPair();
+
+        identityDir = Files.createTempDirectory("bench_identity");
+        remoteRoot = Files.createTempDirectory("bench_remote_root");
+        Path keyPath = generateClientIdentity(identityDir.resolve("id_rsa_bench"));
+
+        sshd = SshServer.setUpDefaultServer();
+        sshd.setPort(0);
+        sshd.setKeyPairProvider(KeyPairProvider.wrap(hostPair));
+        sshd.setPasswordAuthenticator((u, p, s) -> USER.equals(u) && PASS.equals(p));
+        sshd.setPublickeyAuthenticator((u, key, s) ->
+                USER.equals(u) && Arrays.equals(key.getEncoded(), clientPublicKey.getEncoded()));
+        CoreModuleProperties.TCP_NODELAY.set(sshd, true);
+        sshd.setFileSystemFactory(new VirtualFileSystemFactory(remoteRoot));
+        sshd.setCommandFactory((channel, command) -> new ProcessCommand(command, remoteRoot));
+        sshd.setShellFactory(new ProcessShellFactory("/bin/sh", "/bin/sh"));
+        sshd.setSubsystemFactories(Collections.singletonList(new SftpSubsystemFactory()));
+        sshd.start();
+
+        writeKnownHosts(identityDir.resolve("known_hosts"), sshd.getPort(), hostPair);
+        System.setProperty(RemoteSettings.SSH_KEY_NAME.key(), keyPath.toString());
+    }
+
+    /**
+     * Stop the embedded server and delete its temporary files.
+     *
+     * @throws IOException if the server fails to stop
+     */
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        try {
+            if (sshd != null) {
+                sshd.close(true).await(1000);
+            }
+        } finally {
+            System.clearProperty(RemoteSettings.SSH_KEY_NAME.key());
+            delete(identityDir);
+            delete(remoteRoot);
+        }
+    }
+
+    /**
+     * Get the SSH connection URI for the embedded server.
+     *
+     * @return SSH connection URI
+     */
+    public String getUri() {
+        return String.format("ssh://%s:%s@localhost:%d", USER, PASS, sshd.getPort());
+    }
+
+    /**
+     * Get the local folder that serves as the root of the "remote" file system.
+     *
+     * @return remote root folder
+     */
+    public Path getRemoteRoot() {
+        return remoteRoot;
+    }
+
+    private Path generateClientIdentity(Path keyPath) throws Exception {
+        com.jcraft.jsch.KeyPair kpair = com.jcraft.jsch.KeyPair.genKeyPair(new JSch(), com.jcraft.jsch.KeyPair.RSA, 2048);
+        try (OutputStream os = new FileOutputStream(keyPath.toFile())) {
+            kpair.writePrivateKey(os);
+        }
+        Buffer buf = new Buffer(kpair.getPublicKeyBlob());
+        buf.getString(); // skip "ssh-rsa"
+        byte[] e = buf.getMPInt();
+        byte[] n = buf.getMPInt();
+        clientPublicKey = KeyFactory.getInstance("RSA")
+                .generatePublic(new RSAPublicKeySpec(new BigInteger(1, n), new BigInteger(1, e)));
+        kpair.dispose();
+        return keyPath;
+    }
+
+    private static void writeKnownHosts(Path knownHostsPath, int port, KeyPair hostPair) throws IOException {
+        // known_hosts keys are in SSH wire format: string "ssh-rsa", mpint e, mpint n
+        RSAPublicKey publicKey = (RSAPublicKey) hostPair.getPublic();
+        ByteArrayOutputStream blob = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(blob)) {
+            for (byte[] field : new byte[][] { "ssh-rsa".getBytes(StandardCharsets.US_ASCII),
+                    publicKey.getPublicExponent().toByteArray(), publicKey.getModulus().toByteArray() }) {
+                out.writeInt(field.length);
+                out.write(field);
+            }
+        }
+        String entry = String.format("[localhost]:%d ssh-rsa %s%n", port,
+                Base64.getEncoder().encodeToString(blob.toByteArray()));
+        Files.write(knownHostsPath, entry.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void delete(Path path) throws IOException {
+        if ((path != null) && Files.exists(path)) {
+            Files.walk(path).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    /**
+     * This server command runs the requested command line with {@code /bin/sh} in the remote root folder.
+     */
+    private static class ProcessCommand implements Command {
+        private final String command;
+        private final Path workDir;
+        private InputStream in;
+        private OutputStream out;
+        private OutputStream err;
+        private ExitCallback callback;
+
+        ProcessCommand(String command, Path workDir) {
+            this.command = command;
+            this.workDir = workDir;
+        }
+
+        @Override public void setInputStream(InputStream in) { this.in = in; }
+        @Override public void setOutputStream(OutputStream out) { this.out = out; }
+        @Override public void setErrorStream(OutputStream err) { this.err = err; }
+        @Override public void setExitCallback(ExitCallback callback) { this.callback = callback; }
+
+        @Override
+        public void start(ChannelSession channel, Environment env) throws IOException {
+            Process process = new ProcessBuilder("/bin/sh", "-c", command).directory(workDir.toFile()).start();
+            Thread thread = new Thread(() -> {
+                try {
+                    Thread stdin = pump(in, process.getOutputStream(), true);
+                    Thread stderr = pump(process.getErrorStream(), err, false);
+                    Thread stdout = pump(process.getInputStream(), out, false);
+                    int exitStatus = process.waitFor();
+                    stdout.join();
+                    stderr.join();
+                    stdin.interrupt();
+                    callback.onExit(exitStatus);
+                } catch (InterruptedException e) {
+                    callback.onExit(3, e.getMessage());
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override public void destroy(ChannelSession channel) {}
+
+        private static Thread pump(InputStream from, OutputStream to, boolean closeTarget) {
+            Thread thread = new Thread(() -> {
+                byte[] buffer = new byte[8192];
+                try {
+                    int count;
+                    while ((count = from.read(buffer)) != -1) {
+                        to.write(buffer, 0, count);
+                        to.flush();
+                    }
+                } catch (IOException e) {
+                    // stream closed
+                } finally {
+                    if (closeTarget) {
+                        try {
+                            to.close();
+                        } catch (IOException e) {
+                            // ignore
+                        }
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+            return thread;
+        }
+    }
+}
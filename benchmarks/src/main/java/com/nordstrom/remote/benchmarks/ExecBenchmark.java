@@ -0,0 +1,61 @@
+package com.nordstrom.remote.benchmarks;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.nordstrom.remote.ExecResult;
+import com.nordstrom.remote.SshUtils;
+
+/**
+ * Measures the round trip of a trivial remote command via {@code exec} and {@code shell} channels, both with a new
+ * session per command and over a shared session. The probe benchmarks run a list of small commands, one channel
+ * per command over a shared session versus all of them pipelined in one channel.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecBenchmark {
+
+    private static final String COMMAND = "echo ok";
+    private static final List<String> PROBES = Collections.nCopies(50, COMMAND);
+
+    @Benchmark
+    public String execNewSession(EmbeddedServer server) {
+        return SshUtils.exec(server.getUri(), COMMAND);
+    }
+
+    @Benchmark
+    public String execSharedSession(SharedHost shared) {
+        return shared.getHost().exec(COMMAND);
+    }
+
+    @Benchmark
+    public String shellNewSession(EmbeddedServer server) {
+        return SshUtils.shell(server.getUri(), COMMAND);
+    }
+
+    @Benchmark
+    public int probesSharedSession(SharedHost shared) {
+        int length = 0;
+        for (String probe : PROBES) {
+            length += shared.getHost().exec(probe).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public List<ExecResult> probesPipelined(EmbeddedServer server) {
+        return SshUtils.execPipelined(server.getUri(), PROBES);
+    }
+}
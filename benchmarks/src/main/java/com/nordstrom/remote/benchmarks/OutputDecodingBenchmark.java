@@ -0,0 +1,57 @@
+package com.nordstrom.remote.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.jcraft.jsch.ChannelExec;
+import com.nordstrom.remote.SshUtils;
+import com.nordstrom.remote.SshUtils.ChannelType;
+import com.nordstrom.remote.SshUtils.SessionHolder;
+
+/**
+ * Measures the decoding of command output into a single string, into lines pushed to a handler, and into a lazily
+ * consumed stream of lines. All variants run over a shared session.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutputDecodingBenchmark {
+
+    @Param({ "1000", "100000" })
+    public int lines;
+
+    @Benchmark
+    public String execString(SharedHost shared) {
+        return shared.getHost().exec("seq 1 " + lines);
+    }
+
+    @Benchmark
+    public void execLineHandler(SharedHost shared, Blackhole blackhole) {
+        try (SessionHolder<ChannelExec> session = shared.getHost().openChannel(ChannelType.EXEC)) {
+            SshUtils.exec(session, "seq 1 " + lines, (type, line) -> blackhole.consume(line));
+        }
+    }
+
+    @Benchmark
+    public void execLines(SharedHost shared, Blackhole blackhole) {
+        try (SessionHolder<ChannelExec> session = shared.getHost().openChannel(ChannelType.EXEC);
+                Stream<String> output = SshUtils.execLines(session, "seq 1 " + lines, null)) {
+            output.forEach(blackhole::consume);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.nordstrom.remote.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.JSchException;
+import com.nordstrom.remote.PromptMatcher;
+import com.nordstrom.remote.SshUtils.ChannelStreams;
+import com.nordstrom.remote.SshUtils.ChannelType;
+import com.nordstrom.remote.SshUtils.SessionHolder;
+
+/**
+ * Measures {@link ChannelStreams#waitForPrompt(String, long)} and
+ * {@link ChannelStreams#waitForPrompt(PromptMatcher, long, java.util.function.Consumer)} as the output that precedes
+ * the prompt grows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PromptBenchmark {
+
+    private static final String PROMPT = "bench$ ";
+
+    @Param({ "100", "10000", "100000" })
+    public int lines;
+
+    @Benchmark
+    public String waitForPrompt(SharedHost shared) throws JSchException, InterruptedException, IOException {
+        try (SessionHolder<ChannelExec> session = shared.getHost().openChannel(ChannelType.EXEC)) {
+            session.getChannel().setCommand("seq 1 " + lines + "; printf '" + PROMPT + "'");
+            ChannelStreams<ChannelExec> streams = session.getChannelStream();
+            session.connect();
+            return streams.waitForPrompt(PROMPT, -1);
+        }
+    }
+
+    @Benchmark
+    public PromptMatcher.Match waitForAnyPrompt(SharedHost shared)
+                    throws JSchException, InterruptedException, IOException {
+        try (SessionHolder<ChannelExec> session = shared.getHost().openChannel(ChannelType.EXEC)) {
+            session.getChannel().setCommand("seq 1 " + lines + "; printf '" + PROMPT + "'");
+            ChannelStreams<ChannelExec> streams = session.getChannelStream();
+            session.connect();
+            PromptMatcher matcher = new PromptMatcher()
+                    .literal("[sudo] password for").literal("Permission denied").regex("bench[$#] $");
+            return streams.waitForPrompt(matcher, -1, null);
+        }
+    }
+}
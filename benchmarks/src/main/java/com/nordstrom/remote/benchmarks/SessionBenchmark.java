@@ -0,0 +1,34 @@
+package com.nordstrom.remote.benchmarks;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jcraft.jsch.ChannelExec;
+import com.nordstrom.remote.SshUtils.ChannelType;
+import com.nordstrom.remote.SshUtils.SessionHolder;
+
+/**
+ * Measures the latency of establishing an SSH session: TCP connection, key exchange, and authentication.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SessionBenchmark {
+
+    @Benchmark
+    public void sessionSetup(EmbeddedServer server) {
+        try (SessionHolder<ChannelExec> session = new SessionHolder<>(ChannelType.EXEC, URI.create(server.getUri()))) {
+            // connecting the session is the work being measured
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.nordstrom.remote.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.nordstrom.remote.SshUtils;
+import com.nordstrom.remote.TransferOptions;
+import com.nordstrom.remote.TransferResult;
+
+/**
+ * Measures SFTP upload and download of a single file at several sizes. Divide the file size by the reported time
+ * per operation for throughput; each transfer includes session setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class SftpBenchmark {
+
+    private static final String FILE_NAME = "sftp-bench.bin";
+
+    @Param({ "65536", "1048576", "16777216" })
+    public int size;
+
+    private Path localDir;
+    private Path localFile;
+    private Path downloadDir;
+    private String remoteFile;
+
+    @Setup(Level.Trial)
+    public void createFiles(EmbeddedServer server) throws IOException {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        localDir = Files.createTempDirectory("sftp-bench");
+        localFile = Files.write(localDir.resolve(FILE_NAME), content);
+        downloadDir = Files.createDirectory(localDir.resolve("download"));
+        Files.write(server.getRemoteRoot().resolve(FILE_NAME), content);
+        remoteFile = server.getUri() + "/" + FILE_NAME;
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        Files.deleteIfExists(downloadDir.resolve(FILE_NAME));
+        Files.deleteIfExists(downloadDir);
+        Files.deleteIfExists(localFile);
+        Files.deleteIfExists(localDir);
+    }
+
+    @Benchmark
+    public TransferResult upload(EmbeddedServer server) {
+        return SshUtils.sftp(localFile.toUri().toString(), server.getUri(), new TransferOptions());
+    }
+
+    @Benchmark
+    public TransferResult download() {
+        return SshUtils.sftp(remoteFile, downloadDir.toUri().toString(), new TransferOptions());
+    }
+}
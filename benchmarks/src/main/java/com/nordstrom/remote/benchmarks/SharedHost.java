@@ -0,0 +1,48 @@
+package com.nordstrom.remote.benchmarks;
+
+import java.net.URI;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.nordstrom.remote.RemoteHost;
+
+/**
+ * This JMH state holds a {@link RemoteHost} connected to the {@link EmbeddedServer}, so benchmarks that use it
+ * measure channel work without paying for session setup.
+ */
+@State(Scope.Benchmark)
+public class SharedHost {
+
+    private RemoteHost host;
+
+    /**
+     * Connect to the embedded server.
+     *
+     * @param server embedded SSH server
+     */
+    @Setup(Level.Trial)
+    public void connect(EmbeddedServer server) {
+        host = new RemoteHost(URI.create(server.getUri()));
+    }
+
+    /**
+     * Disconnect from the embedded server.
+     */
+    @TearDown(Level.Trial)
+    public void disconnect() {
+        host.close();
+    }
+
+    /**
+     * Get the connected remote host.
+     *
+     * @return remote host handle
+     */
+    public RemoteHost getHost() {
+        return host;
+    }
+}
@@ -0,0 +1,140 @@
+package com.nordstrom.remote;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import com.nordstrom.remote.RemoteConfig.RemoteSettings;
+
+/**
+ * This enumeration defines the named algorithm profiles that can be selected with the <b>SSH_ALGORITHM_PROFILE</b>
+ * setting. Each profile is a set of ordered preference lists for ciphers, key exchange, MACs, and host key types;
+ * a list that a profile doesn't specify is left at the <b>JSch</b> default. Every list ends with algorithms that are
+ * widely supported, so a profile changes the outcome of negotiation with capable servers without making sessions
+ * to older servers fail.
+ * <p>
+ * The <b>SSH_CIPHERS</b>, <b>SSH_KEX_ALGORITHMS</b>, <b>SSH_MACS</b>, and <b>SSH_HOST_KEY_ALGORITHMS</b> settings
+ * override the corresponding list of the selected profile.
+ */
+enum AlgorithmProfile {
+
+    /** <b>JSch</b> defaults */
+    DEFAULT("default", null, null, null, null),
+
+    /**
+     * AES-GCM first, which needs no separate MAC and runs on AES hardware instructions; CTR mode with
+     * encrypt-then-MAC as the fallback
+     */
+    THROUGHPUT("throughput",
+            "aes128-gcm@openssh.com,aes256-gcm@openssh.com,aes128-ctr,aes256-ctr,aes192-ctr",
+            null,
+            "hmac-sha2-256-etm@openssh.com,hmac-sha1-etm@openssh.com,hmac-sha2-512-etm@openssh.com,"
+                    + "hmac-sha2-256,hmac-sha1,hmac-sha2-512",
+            null),
+
+    /**
+     * Elliptic-curve key exchange without the post-quantum hybrid or the extra round trip of group exchange, and
+     * host key types that are cheap to verify
+     */
+    LOW_LATENCY_HANDSHAKE("low-latency-handshake",
+            null,
+            "curve25519-sha256,curve25519-sha256@libssh.org,ecdh-sha2-nistp256,diffie-hellman-group14-sha256",
+            null,
+            "ssh-ed25519,ecdsa-sha2-nistp256,rsa-sha2-256,rsa-sha2-512"),
+
+    /** Modern algorithms first, followed by the legacy algorithms still offered by older servers and appliances */
+    COMPAT("compat",
+            "aes128-ctr,aes192-ctr,aes256-ctr,aes128-gcm@openssh.com,aes256-gcm@openssh.com,"
+                    + "aes128-cbc,aes192-cbc,aes256-cbc,3des-cbc",
+            "curve25519-sha256,curve25519-sha256@libssh.org,ecdh-sha2-nistp256,ecdh-sha2-nistp384,"
+                    + "ecdh-sha2-nistp521,diffie-hellman-group-exchange-sha256,diffie-hellman-group16-sha512,"
+                    + "diffie-hellman-group14-sha256,diffie-hellman-group14-sha1,diffie-hellman-group-exchange-sha1,"
+                    + "diffie-hellman-group1-sha1",
+            "hmac-sha2-256-etm@openssh.com,hmac-sha2-512-etm@openssh.com,hmac-sha2-256,hmac-sha2-512,hmac-sha1",
+            "ssh-ed25519,ecdsa-sha2-nistp256,ecdsa-sha2-nistp384,ecdsa-sha2-nistp521,rsa-sha2-512,rsa-sha2-256,"
+                    + "ssh-rsa");
+
+    private final String profileName;
+    private final String ciphers;
+    private final String kex;
+    private final String macs;
+    private final String hostKeys;
+
+    AlgorithmProfile(String profileName, String ciphers, String kex, String macs, String hostKeys) {
+        this.profileName = profileName;
+        this.ciphers = ciphers;
+        this.kex = kex;
+        this.macs = macs;
+        this.hostKeys = hostKeys;
+    }
+
+    /**
+     * Get the name of this profile, as specified in the <b>SSH_ALGORITHM_PROFILE</b> setting.
+     *
+     * @return profile name
+     */
+    String profileName() {
+        return profileName;
+    }
+
+    /**
+     * Get the profile with the specified name.
+     *
+     * @param profileName profile name (case-insensitive); 'null' or empty for the default profile
+     * @return algorithm profile
+     * @throws IllegalArgumentException if no profile has the specified name
+     */
+    static AlgorithmProfile forName(String profileName) {
+        if ((profileName == null) || profileName.trim().isEmpty()) return DEFAULT;
+        String name = profileName.trim().toLowerCase(Locale.ROOT);
+        for (AlgorithmProfile profile : values()) {
+            if (profile.profileName.equals(name)) return profile;
+        }
+        throw new IllegalArgumentException("Unknown SSH algorithm profile: " + profileName);
+    }
+
+    /**
+     * Add the algorithm configuration specified by the current settings to the specified session properties.
+     * Algorithm properties that are already specified are left as-is.
+     *
+     * @param props SSH session properties
+     * @return session properties with algorithm configuration
+     */
+    static Map<String, String> configure(Map<String, String> props) {
+        RemoteConfig config = RemoteConfig.getConfig();
+        AlgorithmProfile profile = forName(config.getString(RemoteSettings.SSH_ALGORITHM_PROFILE.key()));
+        String ciphers = choose(config.getString(RemoteSettings.SSH_CIPHERS.key()), profile.ciphers);
+        String kex = choose(config.getString(RemoteSettings.SSH_KEX_ALGORITHMS.key()), profile.kex);
+        String macs = choose(config.getString(RemoteSettings.SSH_MACS.key()), profile.macs);
+        String hostKeys = choose(config.getString(RemoteSettings.SSH_HOST_KEY_ALGORITHMS.key()), profile.hostKeys);
+
+        Map<String, String> result = new HashMap<>(props);
+        if (ciphers != null) {
+            result.putIfAbsent("cipher.s2c", ciphers);
+            result.putIfAbsent("cipher.c2s", ciphers);
+        }
+        if (kex != null) {
+            result.putIfAbsent("kex", kex);
+        }
+        if (macs != null) {
+            result.putIfAbsent("mac.s2c", macs);
+            result.putIfAbsent("mac.c2s", macs);
+        }
+        if (hostKeys != null) {
+            result.putIfAbsent("server_host_key", hostKeys);
+        }
+        return result;
+    }
+
+    /**
+     * Choose between an explicit algorithm list setting and the corresponding list of a profile.
+     *
+     * @param setting value of the algorithm list setting; may be 'null'
+     * @param fromProfile algorithm list of the profile; may be 'null'
+     * @return the setting (without whitespace) if specified; otherwise the profile list
+     */
+    private static String choose(String setting, String fromProfile) {
+        if ((setting == null) || setting.trim().isEmpty()) return fromProfile;
+        return setting.replaceAll("\\s+", "");
+    }
+}
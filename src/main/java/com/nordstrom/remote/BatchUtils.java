@@ -4,6 +4,12 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,6 +55,14 @@ import com.nordstrom.remote.SshUtils.SessionHolder;
  *             <li>{@link ChannelStreams#readChannel readChannel} - Read the input from the channel.</li>
  *         </ul>
  *     </li>
+ *     <li>{@link ExpectScript} - This class is a declarative expect/send script that drives the interactive session.
+ *         Each step advances as soon as one of its prompts arrives (no fixed sleeps), consecutive commands are written
+ *         together, and the output and timing of each step are recorded: <ul>
+ *             <li>{@link ExpectScript#send send} - Send a line to the remote host.</li>
+ *             <li>{@link ExpectScript#expect(long, ExpectScript.Branch...) expect} - Wait for one of several prompts, each with its own reaction.</li>
+ *             <li>{@link ExpectScript#run run} - Run the script on the channel streams of the session.</li>
+ *         </ul>
+ *     </li>
  * </ul>
  */
 public class BatchUtils {
@@ -59,6 +73,11 @@ public class BatchUtils {
 
     private static final Logger LOG = LoggerFactory.getLogger(BatchUtils.class);
     
+    /** maximum interval in milliseconds to wait for each shell prompt of the batch session */
+    private static final long PROMPT_TIMEOUT = 30000;
+    /** regular expression for the password prompts of {@code sudo} and {@code su} */
+    private static final String PASSWORD_PROMPT = "(?i)password[^\\n]*: ?";
+    
     /**
      * Execute a batch command on using the specified credential on the indicated remote host.
      * 
@@ -71,7 +90,79 @@ public class BatchUtils {
      * @return output from the specified batch command
      */
     public static String executeBatch(String userName, String password, String hostname, String sudoCmd, String batchDir, String batchCmd) {
-        String output = null;
+        URI connectUri = getConnectUri(userName, password, hostname, batchDir);
+        try (SessionHolder<ChannelExec> session = new SessionHolder<>(ChannelType.EXEC, connectUri)) {
+            return executeBatch(session, userName, password, hostname, sudoCmd, batchDir, batchCmd);
+        }
+    }
+    
+    /**
+     * Execute a list of batch commands, in order, using the specified credential on the indicated remote host.
+     * <p>
+     * The commands are run in a single batch execution shell session, so the connection and the {@code sudo su}
+     * elevation are paid once for all of them. Shell state (working directory, variables) carries over from one
+     * command to the next. Each command is framed by markers unique to the session and the command, so its output
+     * and exit status are captured separately. Standard error is merged into the output, and standard input is
+     * redirected from {@code /dev/null}.
+     * <p>
+     * A command that exits with non-zero status yields a failed result, which holds a
+     * {@link RemoteExecutionFailedException}. A command that times out (per the <b>COMPLETION_TIMEOUT</b> setting)
+     * or ends the shell also yields a failed result, and no further commands are run.
+     * 
+     * @param userName user name for remote host connection
+     * @param password password for remote host connection
+     * @param hostname name of remote host
+     * @param sudoCmd {@code sudo su} command to open batch execution shell session; if 'null', the commands are run
+     *     as the connecting user
+     * @param batchDir directory in which the batch commands are executed
+     * @param batchCmds batch commands to be executed, in order
+     * @param stopOnFailure 'true' to skip the remaining commands after the first failure; 'false' to run them all
+     * @return results of the commands that were run, in order; the connect time is attributed to the first result
+     */
+    public static List<ExecResult> executeBatch(String userName, String password, String hostname, String sudoCmd,
+                    String batchDir, List<String> batchCmds, boolean stopOnFailure) {
+        URI connectUri = getConnectUri(userName, password, hostname, batchDir);
+        if (sudoCmd == null) {
+            return executeBatch(connectUri, batchCmds, stopOnFailure);
+        }
+        try (SessionHolder<ChannelExec> session = new SessionHolder<>(ChannelType.EXEC, connectUri)) {
+            return executeBatch(session, password, sudoCmd, getUserPrompt(userName, hostname),
+                    getSudoPrompt(sudoCmd, hostname), batchDir, batchCmds, stopOnFailure);
+        }
+    }
+    
+    /**
+     * Asynchronously execute a batch command on using the specified credential on the indicated remote host.
+     * <p>
+     * <b>NOTE</b>: Cancelling the returned future disconnects the channel of the batch command.
+     * 
+     * @param userName user name for remote host connection
+     * @param password password for remote host connection
+     * @param hostname name of remote host
+     * @param sudoCmd {@code sudo su} command to open batch execution shell session
+     * @param batchDir directory that contains the specified batch command
+     * @param batchCmd batch command to be executed
+     * @param executor executor that runs the batch command
+     * @return future for the output from the specified batch command
+     * @see #executeBatch(String, String, String, String, String, String)
+     */
+    public static CompletableFuture<String> executeBatchAsync(String userName, String password, String hostname,
+                    String sudoCmd, String batchDir, String batchCmd, Executor executor) {
+        URI connectUri = getConnectUri(userName, password, hostname, batchDir);
+        return RemoteFuture.supplyAsync(ChannelType.EXEC, connectUri, (SessionHolder<ChannelExec> session) ->
+                        executeBatch(session, userName, password, hostname, sudoCmd, batchDir, batchCmd), executor);
+    }
+    
+    /**
+     * Assemble the connection URI for the specified credential, host, and batch directory.
+     * 
+     * @param userName user name for remote host connection
+     * @param password password for remote host connection
+     * @param hostname name of remote host
+     * @param batchDir directory that contains the batch command
+     * @return SSH connection URI
+     */
+    private static URI getConnectUri(String userName, String password, String hostname, String batchDir) {
         String connectUri = null;
         
         try {
@@ -80,43 +171,61 @@ public class BatchUtils {
             // This exception will never be thrown
         }
         
+        return URI.create(connectUri);
+    }
+    
+    /**
+     * Execute a batch command via the specified remote channel.
+     * 
+     * @param session wrapped {@link ChannelExec} session object
+     * @param userName user name for remote host connection
+     * @param password password for remote host connection
+     * @param hostname name of remote host
+     * @param sudoCmd {@code sudo su} command to open batch execution shell session
+     * @param batchDir directory that contains the specified batch command
+     * @param batchCmd batch command to be executed
+     * @return output from the specified batch command
+     */
+    private static String executeBatch(SessionHolder<ChannelExec> session, String userName, String password,
+                    String hostname, String sudoCmd, String batchDir, String batchCmd) {
+        String output = null;
+        
         if (sudoCmd != null) {
-            int idx = sudoCmd.lastIndexOf(' ') + 1;
-            
-            String userPrompt = userName.toLowerCase() + "@" + hostname + ":";
-            String sudoPrompt = sudoCmd.substring(idx) + "@" + hostname + ":";
+            String userPrompt = getUserPrompt(userName, hostname);
+            String sudoPrompt = getSudoPrompt(sudoCmd, hostname);
             
-            try (SessionHolder<ChannelExec> session = new SessionHolder<>(ChannelType.EXEC, URI.create(connectUri))) {
+            try {
                 ChannelExec channel = session.getChannel();
                 
                 channel.setErrStream(System.err);
                 channel.setPty(true);
                 channel.setCommand(sudoCmd);
-                channel.connect();
-                
-                ChannelStreams<?> channelStream = session.getChannelStream();
+                session.connect();
                 
-                // wait for password prompt
-                channelStream.waitForInput();
+                long batchTimeout = (session.getTimeout() > 0) ? session.getTimeout() : -1;
+                ExpectScript script = new ExpectScript()
+                        // submit password if prompted, and wait for the batch user shell
+                        .expect(PROMPT_TIMEOUT,
+                                ExpectScript.regex(PASSWORD_PROMPT).thenSend(password).thenRepeat(),
+                                ExpectScript.literal("Sorry, try again").thenFail("Authentication failed: " + sudoCmd),
+                                ExpectScript.literal(sudoPrompt))
+                        // change to the batch directory
+                        .send("cd " + batchDir)
+                        .expect(sudoPrompt, PROMPT_TIMEOUT)
+                        // execute the batch command
+                        .send(batchCmd)
+                        .expect(sudoPrompt, batchTimeout)
+                        // exit from batch user shell
+                        .send("exit")
+                        .expectOptional(PROMPT_TIMEOUT, ExpectScript.literal(userPrompt))
+                        // exit from pseudo-terminal
+                        .send("exit");
                 
-                // submit password
-                channelStream.writeln(password);
-                LOG.info(channelStream.waitForPrompt(sudoPrompt, 1000));
-                
-                // change to the batch directory
-                channelStream.writeln("cd " + batchDir);
-                LOG.info(channelStream.waitForPrompt(sudoPrompt, 1000));
-                
-                // execute the batch command
-                channelStream.writeln(batchCmd);
-                output = channelStream.waitForPrompt(sudoPrompt, -1);
-                
-                // exit from batch user shell
-                channelStream.writeln("exit");
-                LOG.info(channelStream.waitForPrompt(userPrompt, 1000));
-                
-                // exit from pseudo-terminal
-                channelStream.writeln("exit");
+                ExpectScript.Result result = script.run(session.getChannelStream());
+                for (ExpectScript.StepResult step : result.getSteps()) {
+                    LOG.debug("{}", step);
+                }
+                output = result.getSteps().get(2).getOutput();
                 session.disconnect(true);
                 
                 session.assertExitStatus(output);
@@ -129,11 +238,225 @@ public class BatchUtils {
                 Thread.currentThread().interrupt();
             }
         } else {
-            output = SshUtils.exec(connectUri, batchCmd);
+            output = SshUtils.exec(session, SshUtils.inWorkDir(session, batchCmd));
         }
         
         LOG.info(output);
         return output;
     }
     
+    /**
+     * Execute a list of batch commands, in order, in a shell of the connecting user.
+     * 
+     * @param connectUri SSH connection URI, specifying the directory in which the batch commands are executed
+     * @param batchCmds batch commands to be executed, in order
+     * @param stopOnFailure 'true' to skip the remaining commands after the first failure; 'false' to run them all
+     * @return results of the commands that were run, in order
+     */
+    private static List<ExecResult> executeBatch(URI connectUri, List<String> batchCmds, boolean stopOnFailure) {
+        List<ExecResult> results = new ArrayList<>();
+        long startTime = System.currentTimeMillis();
+        try (RemoteShell shell = new RemoteShell(connectUri)) {
+            long connectMillis = System.currentTimeMillis() - startTime;
+            for (String batchCmd : batchCmds) {
+                ExecResult result;
+                try {
+                    result = shell.run(batchCmd);
+                } catch (RemoteExecutionFailedException e) {
+                    results.add(new ExecResult(shell.getMaskedUri(), e.getTaskOutput(), -1, e, startTime,
+                            connectMillis, System.currentTimeMillis() - startTime));
+                    break;
+                }
+                results.add(withConnectTime(result, connectMillis));
+                if (stopOnFailure && !result.isSuccess()) break;
+                startTime = System.currentTimeMillis();
+                connectMillis = 0;
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Execute a list of batch commands, in order, via the specified remote channel.
+     * 
+     * @param session wrapped {@link ChannelExec} session object
+     * @param password password for remote host connection
+     * @param sudoCmd {@code sudo su} command to open batch execution shell session
+     * @param userPrompt shell prompt of the connecting user
+     * @param sudoPrompt shell prompt of the batch user
+     * @param batchDir directory in which the batch commands are executed
+     * @param batchCmds batch commands to be executed, in order
+     * @param stopOnFailure 'true' to skip the remaining commands after the first failure; 'false' to run them all
+     * @return results of the commands that were run, in order
+     */
+    static List<ExecResult> executeBatch(SessionHolder<ChannelExec> session, String password, String sudoCmd,
+                    String userPrompt, String sudoPrompt, String batchDir, List<String> batchCmds,
+                    boolean stopOnFailure) {
+        List<ExecResult> results = new ArrayList<>();
+        long startTime = System.currentTimeMillis();
+        
+        try {
+            ChannelExec channel = session.getChannel();
+            
+            channel.setErrStream(System.err);
+            channel.setPty(true);
+            channel.setCommand(sudoCmd);
+            session.connect();
+            
+            ChannelStreams<?> channelStream = session.getChannelStream();
+            new ExpectScript()
+                    // submit password if prompted, and wait for the batch user shell
+                    .expect(PROMPT_TIMEOUT,
+                            ExpectScript.regex(PASSWORD_PROMPT).thenSend(password).thenRepeat(),
+                            ExpectScript.literal("Sorry, try again").thenFail("Authentication failed: " + sudoCmd),
+                            ExpectScript.literal(sudoPrompt))
+                    // change to the batch directory
+                    .send("cd " + batchDir)
+                    .expect(sudoPrompt, PROMPT_TIMEOUT)
+                    .run(channelStream);
+            
+            long connectMillis = System.currentTimeMillis() - startTime;
+            String markerPrefix = "RB" + UUID.randomUUID().toString().replace("-", "");
+            for (int i = 0; i < batchCmds.size(); i++) {
+                ExecResult result = runFramed(session, channelStream, markerPrefix + "_" + i, batchCmds.get(i),
+                        startTime, connectMillis);
+                results.add(result);
+                LOG.info(result.getOutput());
+                if (!result.isSuccess()
+                        && (stopOnFailure || (result.getExitStatus() == -1))) break;
+                startTime = System.currentTimeMillis();
+                connectMillis = 0;
+            }
+            
+            if (!channel.isClosed()) {
+                new ExpectScript()
+                        // exit from batch user shell
+                        .send("exit")
+                        .expectOptional(PROMPT_TIMEOUT, ExpectScript.literal(userPrompt))
+                        // exit from pseudo-terminal
+                        .send("exit")
+                        .run(channelStream);
+            }
+            session.disconnect(true);
+        } catch (JSchException e) {
+            throw UncheckedThrow.throwUnchecked(e);
+        } catch (IOException e) {
+            throw UncheckedThrow.throwUnchecked(e);
+        } catch (InterruptedException e) {
+            // set the 'interrupt' flag
+            Thread.currentThread().interrupt();
+        }
+        return results;
+    }
+    
+    /**
+     * Run the specified command in the batch execution shell, framed by start and end markers.
+     * <p>
+     * The markers are assembled by {@code printf} from two pieces, so the echo of the framed command by the
+     * pseudo-terminal never contains them. The output of the command is everything between the start marker line
+     * and the end marker, which is followed by the exit status of the command.
+     * 
+     * @param session wrapped {@link ChannelExec} session object
+     * @param channelStream channel I/O object for the batch execution shell
+     * @param marker marker unique to the session and the command
+     * @param batchCmd batch command to be executed
+     * @param startTime start time of the command (epoch milliseconds)
+     * @param connectMillis interval spent establishing the session
+     * @return result of the command
+     * @throws InterruptedException if this thread was interrupted
+     * @throws IOException if an I/O error occurs
+     */
+    private static ExecResult runFramed(SessionHolder<ChannelExec> session, ChannelStreams<?> channelStream,
+                    String marker, String batchCmd, long startTime, long connectMillis)
+                    throws InterruptedException, IOException {
+        int split = marker.indexOf('_');
+        String head = marker.substring(0, split);
+        String tail = marker.substring(split);
+        // the closing brace goes on its own line, so a trailing comment doesn't swallow it
+        channelStream.writeln("printf '%s%s\\n' '" + head + "' '" + tail + "<'; { " + batchCmd
+                + "\n} </dev/null 2>&1; printf '%s%s%d\\n' '" + head + "' '" + tail + ">:' \"$?\"");
+        
+        long timeout = session.getTimeout();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        StringBuilder output = new StringBuilder();
+        StringBuilder status = new StringBuilder();
+        boolean done = (channelStream.waitForPrompt(new PromptMatcher().literal(marker + "<"),
+                        remaining(timeout, deadline), null) != null)
+                && (channelStream.waitForPrompt(new PromptMatcher().literal(marker + ">:"),
+                        remaining(timeout, deadline), output::append) != null)
+                && (channelStream.waitForPrompt(new PromptMatcher().literal("\n"),
+                        remaining(timeout, deadline), status::append) != null);
+        
+        String text = output.toString().replace("\r\n", "\n");
+        if (text.endsWith(marker + ">:")) {
+            text = text.substring(0, text.length() - marker.length() - 2);
+        }
+        if (text.startsWith("\n")) {
+            text = text.substring(1);
+        }
+        long totalMillis = System.currentTimeMillis() - startTime;
+        
+        if (!done) {
+            String message = session.getChannel().isClosed() ? "Shell closed before command completed"
+                    : "Timed out waiting for command completion";
+            RemoteExecutionFailedException failure = new RemoteExecutionFailedException(session, text,
+                    new JSchException(message + " for " + session.getMaskedUri()));
+            return new ExecResult(session.getMaskedUri(), text, -1, failure, startTime, connectMillis, totalMillis);
+        }
+        
+        int exitStatus = Integer.parseInt(status.toString().trim());
+        RemoteExecutionFailedException failure = (exitStatus == 0) ? null
+                : new RemoteExecutionFailedException(session.getMaskedUri(), exitStatus, text);
+        return new ExecResult(session.getMaskedUri(), text, exitStatus, failure, startTime, connectMillis,
+                totalMillis);
+    }
+    
+    /**
+     * Get the interval remaining until the specified deadline.
+     * 
+     * @param timeout command timeout in milliseconds; 0 to wait indefinitely
+     * @param deadline deadline (per {@link System#nanoTime()})
+     * @return remaining interval in milliseconds; -1 to wait indefinitely
+     */
+    private static long remaining(long timeout, long deadline) {
+        if (timeout <= 0) return -1;
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+    }
+    
+    /**
+     * Get a copy of the specified result with the specified connect time.
+     * 
+     * @param result remote execution result
+     * @param connectMillis interval spent establishing the session
+     * @return result with the specified connect time
+     */
+    private static ExecResult withConnectTime(ExecResult result, long connectMillis) {
+        if (connectMillis == 0) return result;
+        return new ExecResult(result.getMaskedUri(), result.getOutput(), result.getExitStatus(),
+                result.getException(), result.getStartTime(), connectMillis, result.getTotalMillis() + connectMillis);
+    }
+    
+    /**
+     * Get the shell prompt of the connecting user.
+     * 
+     * @param userName user name for remote host connection
+     * @param hostname name of remote host
+     * @return shell prompt of the connecting user
+     */
+    private static String getUserPrompt(String userName, String hostname) {
+        return userName.toLowerCase() + "@" + hostname + ":";
+    }
+    
+    /**
+     * Get the shell prompt of the batch user, which is the last word of the {@code sudo su} command.
+     * 
+     * @param sudoCmd {@code sudo su} command to open batch execution shell session
+     * @param hostname name of remote host
+     * @return shell prompt of the batch user
+     */
+    private static String getSudoPrompt(String sudoCmd, String hostname) {
+        int idx = sudoCmd.lastIndexOf(' ') + 1;
+        return sudoCmd.substring(idx) + "@" + hostname + ":";
+    }
+    
 }
@@ -0,0 +1,128 @@
+package com.nordstrom.remote;
+
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import com.nordstrom.remote.RemoteConfig.RemoteSettings;
+
+/**
+ * This output stream captures a bounded amount of the data written to it, retaining the first <i>head</i> bytes and
+ * the last <i>tail</i> bytes in fixed-size buffers. Data in between is counted but discarded.
+ * <p>
+ * Writes never block and never allocate, which allows the stream to be attached directly to a channel (e.g. - as
+ * the standard error stream of an {@code exec} channel) without stalling the session thread, regardless of how much
+ * data the remote task produces.
+ */
+public class BoundedCapture extends OutputStream {
+
+    private final byte[] head;
+    private final byte[] tail;
+    private final byte[] single = new byte[1];
+    private int headCount;
+    private int tailStart;
+    private int tailCount;
+    private long total;
+
+    /**
+     * Constructor for bounded capture with head and tail sizes from the <b>STDERR_HEAD_SIZE</b> and
+     * <b>STDERR_TAIL_SIZE</b> settings.
+     */
+    public BoundedCapture() {
+        this(RemoteConfig.getConfig().getInt(RemoteSettings.STDERR_HEAD_SIZE.key()),
+                RemoteConfig.getConfig().getInt(RemoteSettings.STDERR_TAIL_SIZE.key()));
+    }
+
+    /**
+     * Constructor for bounded capture with the specified head and tail sizes.
+     *
+     * @param headSize number of leading bytes to retain
+     * @param tailSize number of trailing bytes to retain
+     */
+    public BoundedCapture(int headSize, int tailSize) {
+        this.head = new byte[headSize];
+        this.tail = new byte[tailSize];
+    }
+
+    @Override
+    public synchronized void write(int b) {
+        single[0] = (byte) b;
+        write(single, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        total += len;
+        // fill head buffer first
+        int toHead = Math.min(len, head.length - headCount);
+        System.arraycopy(b, off, head, headCount, toHead);
+        headCount += toHead;
+        off += toHead;
+        len -= toHead;
+
+        if ((len == 0) || (tail.length == 0)) return;
+
+        // only the last 'tail.length' bytes of this write can survive
+        if (len > tail.length) {
+            off += len - tail.length;
+            len = tail.length;
+        }
+        int end = (tailStart + tailCount) % tail.length;
+        int first = Math.min(len, tail.length - end);
+        System.arraycopy(b, off, tail, end, first);
+        System.arraycopy(b, off + first, tail, 0, len - first);
+        int overflow = tailCount + len - tail.length;
+        if (overflow > 0) {
+            tailStart = (tailStart + overflow) % tail.length;
+            tailCount = tail.length;
+        } else {
+            tailCount += len;
+        }
+    }
+
+    /**
+     * Get the total number of bytes written to this stream.
+     *
+     * @return total byte count
+     */
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    /**
+     * Get the number of bytes discarded between the head and tail of the captured data.
+     *
+     * @return discarded byte count
+     */
+    public synchronized long getOmitted() {
+        return total - headCount - tailCount;
+    }
+
+    /**
+     * Get the captured data, with an omission marker between head and tail if data was discarded.
+     *
+     * @param charset character set with which to decode the captured data
+     * @return captured data
+     */
+    public synchronized String toString(Charset charset) {
+        StringBuilder builder = new StringBuilder(new String(head, 0, headCount, charset));
+        long omitted = getOmitted();
+        if (omitted > 0) {
+            builder.append("\n... [").append(omitted).append(" bytes omitted] ...\n");
+        }
+        byte[] tailBytes = new byte[tailCount];
+        int first = Math.min(tailCount, tail.length - tailStart);
+        System.arraycopy(tail, tailStart, tailBytes, 0, first);
+        System.arraycopy(tail, 0, tailBytes, first, tailCount - first);
+        return builder.append(new String(tailBytes, charset)).toString();
+    }
+
+    /**
+     * Get the captured data decoded with the default character set.
+     *
+     * @return captured data
+     */
+    @Override
+    public String toString() {
+        return toString(Charset.defaultCharset());
+    }
+}
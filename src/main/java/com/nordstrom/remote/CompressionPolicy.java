@@ -0,0 +1,157 @@
+package com.nordstrom.remote;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.jcraft.jsch.Session;
+import com.nordstrom.remote.RemoteConfig.RemoteSettings;
+
+/**
+ * This class configures SSH transport compression for new sessions, as specified by the <b>SESSION_COMPRESSION</b>
+ * setting: {@code none}, {@code zlib}, {@code zlib@openssh.com}, or {@code adaptive}.
+ * <p>
+ * In {@code adaptive} mode, compression is enabled per host when the measured throughput of the link to that host
+ * is below the <b>COMPRESSION_THRESHOLD</b> setting. Throughput is measured passively from file transfers over
+ * uncompressed sessions, so a host is connected without compression until a measurement is available. Measurements
+ * expire after {@link #SAMPLE_LIFETIME_MILLIS}, after which the link is measured again.
+ */
+final class CompressionPolicy {
+
+    /** compression mode: no compression */
+    static final String NONE = "none";
+    /** compression mode: compression enabled per host by measured throughput */
+    static final String ADAPTIVE = "adaptive";
+
+    /** minimum transfer size for a throughput measurement; smaller transfers are dominated by round trips */
+    static final long MIN_SAMPLE_BYTES = 1048576;
+    /** interval after which a throughput measurement expires */
+    static final long SAMPLE_LIFETIME_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private static final String COMPRESSED = "zlib@openssh.com,zlib," + NONE;
+    private static final Map<String, Sample> SAMPLES = new ConcurrentHashMap<>();
+
+    /**
+     * This class records a throughput measurement for a host.
+     */
+    private static class Sample {
+        private final long bytesPerSecond;
+        private final long timestamp;
+
+        Sample(long bytesPerSecond, long timestamp) {
+            this.bytesPerSecond = bytesPerSecond;
+            this.timestamp = timestamp;
+        }
+    }
+
+    private CompressionPolicy() {
+        throw new AssertionError("CompressionPolicy is a static utility class that cannot be instantiated");
+    }
+
+    /**
+     * Add compression configuration for a session to the specified host to the specified session properties.
+     * Compression properties that are already specified are left as-is.
+     *
+     * @param host remote host name
+     * @param port remote port number
+     * @param props SSH session properties
+     * @return session properties with compression configuration
+     */
+    static Map<String, String> configure(String host, int port, Map<String, String> props) {
+        RemoteConfig config = RemoteConfig.getConfig();
+        String mode = config.getString(RemoteSettings.SESSION_COMPRESSION.key());
+        String offer;
+        if (ADAPTIVE.equals(mode)) {
+            offer = isSlowLink(host, port, config.getLong(RemoteSettings.COMPRESSION_THRESHOLD.key()))
+                    ? COMPRESSED : NONE;
+        } else if (NONE.equals(mode)) {
+            offer = NONE;
+        } else {
+            // fall back to no compression if the server doesn't support the specified method
+            offer = mode + "," + NONE;
+        }
+
+        Map<String, String> result = new HashMap<>(props);
+        result.putIfAbsent("compression.s2c", offer);
+        result.putIfAbsent("compression.c2s", offer);
+        if (!NONE.equals(offer)) {
+            result.putIfAbsent("compression_level", config.getString(RemoteSettings.COMPRESSION_LEVEL.key()));
+        }
+        return result;
+    }
+
+    /**
+     * Record the throughput of a transfer over the specified session. Transfers over compressed sessions and
+     * transfers smaller than {@link #MIN_SAMPLE_BYTES} are ignored.
+     *
+     * @param session SSH session that carried the transfer
+     * @param bytes number of bytes transferred
+     * @param millis elapsed transfer interval in milliseconds
+     */
+    static void record(Session session, long bytes, long millis) {
+        String offer = session.getConfig("compression.s2c");
+        if ((offer != null) && !offer.startsWith(NONE)) return;
+        record(session.getHost(), session.getPort(), bytes, millis);
+    }
+
+    /**
+     * Record the throughput of an uncompressed transfer to the specified host. Transfers smaller than
+     * {@link #MIN_SAMPLE_BYTES} are ignored.
+     *
+     * @param host remote host name
+     * @param port remote port number
+     * @param bytes number of bytes transferred
+     * @param millis elapsed transfer interval in milliseconds
+     */
+    static void record(String host, int port, long bytes, long millis) {
+        if ((bytes < MIN_SAMPLE_BYTES) || (millis <= 0)) return;
+        SAMPLES.put(getKey(host, port), new Sample(bytes * 1000 / millis, System.currentTimeMillis()));
+    }
+
+    /**
+     * Get the current throughput measurement for the specified host.
+     *
+     * @param host remote host name
+     * @param port remote port number
+     * @return measured throughput in bytes per second; -1 if no current measurement is available
+     */
+    static long getThroughput(String host, int port) {
+        Sample sample = SAMPLES.get(getKey(host, port));
+        if ((sample == null) || (System.currentTimeMillis() - sample.timestamp > SAMPLE_LIFETIME_MILLIS)) {
+            return -1;
+        }
+        return sample.bytesPerSecond;
+    }
+
+    /**
+     * Discard all throughput measurements.
+     */
+    static void reset() {
+        SAMPLES.clear();
+    }
+
+    /**
+     * Determine if the link to the specified host has been measured below the specified threshold.
+     *
+     * @param host remote host name
+     * @param port remote port number
+     * @param threshold throughput threshold in bytes per second
+     * @return 'true' if the current measurement is below the threshold; otherwise 'false'
+     */
+    private static boolean isSlowLink(String host, int port, long threshold) {
+        long throughput = getThroughput(host, port);
+        return (throughput >= 0) && (throughput < threshold);
+    }
+
+    /**
+     * Get the measurement key for the specified host.
+     *
+     * @param host remote host name
+     * @param port remote port number
+     * @return measurement key
+     */
+    private static String getKey(String host, int port) {
+        return host + ":" + port;
+    }
+}
@@ -0,0 +1,341 @@
+package com.nordstrom.remote;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class encodes a local file as a delta against the block signatures of an existing remote file, in the manner
+ * of <b>rsync</b>. A rolling Adler-32 checksum is slid over the local file one byte at a time; where it matches the
+ * weak checksum of a remote block, the MD5 digest of the window is compared with the strong checksum of that block.
+ * Matched blocks are encoded as copy instructions, and everything else as literal data.
+ * <p>
+ * The remote side of this exchange runs on the remote host via {@code python3}: {@link #SIGNATURE_SCRIPT} emits the
+ * block signatures of the existing file, and {@link #PATCH_SCRIPT} rebuilds the file from the existing file and the
+ * uploaded delta, replacing the original and printing the SHA-256 checksum of the result.
+ */
+class DeltaEncoder {
+
+    /**
+     * Emit "adler32 md5" for each full block of the file named by argv[1], with block size argv[2].
+     */
+    static final String SIGNATURE_SCRIPT = String.join("\n",
+            "import sys, zlib, hashlib",
+            "size = int(sys.argv[2])",
+            "with open(sys.argv[1], \"rb\") as f:",
+            "    block = f.read(size)",
+            "    while len(block) == size:",
+            "        sys.stdout.write(\"%d %s\\n\" % (zlib.adler32(block), hashlib.md5(block).hexdigest()))",
+            "        block = f.read(size)");
+
+    /**
+     * Rebuild the file named by argv[1] from itself and the delta named by argv[2], with block size argv[3].
+     */
+    static final String PATCH_SCRIPT = String.join("\n",
+            "import sys, os, struct, hashlib",
+            "target, delta, size = sys.argv[1], sys.argv[2], int(sys.argv[3])",
+            "temp = target + \".delta-tmp\"",
+            "digest = hashlib.sha256()",
+            "def emit(data):",
+            "    out.write(data)",
+            "    digest.update(data)",
+            "try:",
+            "    with open(target, \"rb\") as old, open(delta, \"rb\") as ops, open(temp, \"wb\") as out:",
+            "        op = ops.read(1)",
+            "        while op != b\"E\":",
+            "            if op == b\"C\":",
+            "                index, count = struct.unpack(\">qi\", ops.read(12))",
+            "                old.seek(index * size)",
+            "                remain = count * size",
+            "                while remain > 0:",
+            "                    data = old.read(min(remain, 1048576))",
+            "                    if not data: sys.exit(\"block %d is past the end of the file\" % index)",
+            "                    emit(data)",
+            "                    remain -= len(data)",
+            "            elif op == b\"L\":",
+            "                length = struct.unpack(\">i\", ops.read(4))[0]",
+            "                data = ops.read(length)",
+            "                if len(data) != length: sys.exit(\"truncated delta\")",
+            "                emit(data)",
+            "            else:",
+            "                sys.exit(\"invalid delta instruction\")",
+            "            op = ops.read(1)",
+            "    os.chmod(temp, os.stat(target).st_mode & 0o7777)",
+            "    os.replace(temp, target)",
+            "finally:",
+            "    os.remove(delta)",
+            "    if os.path.exists(temp): os.remove(temp)",
+            "print(digest.hexdigest())");
+
+    private static final int MODULUS = 65521;
+    private static final int MIN_BLOCK_SIZE = 2048;
+    private static final int MAX_BLOCK_SIZE = 131072;
+    private static final int MAX_LITERAL = 1048576;
+
+    private final int blockSize;
+    private final Map<Integer, List<Integer>> weakIndex = new HashMap<>();
+    private final List<byte[]> strongSums = new ArrayList<>();
+    private final MessageDigest md5;
+    private final MessageDigest sha256;
+
+    private DataOutputStream out;
+    private long copyIndex = -1;
+    private int copyCount;
+    private long deltaSize;
+
+    /**
+     * Constructor for delta encoder
+     *
+     * @param blockSize block size of the remote signatures
+     * @param signatures output of {@link #SIGNATURE_SCRIPT}: one "adler32 md5" line per block
+     */
+    DeltaEncoder(int blockSize, String signatures) {
+        this.blockSize = blockSize;
+        try {
+            md5 = MessageDigest.getInstance("MD5");
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 and SHA-256 are required algorithms", e);
+        }
+        for (String line : signatures.split("\n")) {
+            String[] fields = line.trim().split(" ");
+            if (fields.length != 2) continue;
+            weakIndex.computeIfAbsent((int) Long.parseLong(fields[0]), k -> new ArrayList<>()).add(strongSums.size());
+            strongSums.add(fromHex(fields[1]));
+        }
+    }
+
+    /**
+     * Get the block size for a delta against a remote file of the specified size: the square root of its size,
+     * rounded down to a power of two and clamped to the range 2 KB to 128 KB.
+     *
+     * @param size size of the remote file
+     * @return delta block size
+     */
+    static int getBlockSize(long size) {
+        int root = Integer.highestOneBit((int) Math.min(Integer.MAX_VALUE, (long) Math.sqrt(size)));
+        return Math.max(MIN_BLOCK_SIZE, Math.min(MAX_BLOCK_SIZE, root));
+    }
+
+    /**
+     * Get the number of remote blocks available for matching.
+     *
+     * @return remote block count
+     */
+    int getBlockCount() {
+        return strongSums.size();
+    }
+
+    /**
+     * Get the size of the encoded delta.
+     *
+     * @return delta size in bytes
+     */
+    long getDeltaSize() {
+        return deltaSize;
+    }
+
+    /**
+     * Encode the specified local file content as a delta against the remote blocks. The delta is a sequence of
+     * instructions: {@code 'C'} + block index (long) + block count (int) to copy remote blocks; {@code 'L'} + length
+     * (int) + data to insert literal data; and {@code 'E'} to end.
+     *
+     * @param in local file content
+     * @param delta stream that receives the delta
+     * @return SHA-256 checksum of the local file content as a lower-case hexadecimal string
+     * @throws IOException if an I/O error occurs
+     */
+    String encode(InputStream in, OutputStream delta) throws IOException {
+        out = new DataOutputStream(delta);
+        byte[] buf = new byte[Math.max(MAX_LITERAL, blockSize * 4)];
+        int len = fill(in, buf, 0);
+        int pos = 0;
+        int literal = 0;
+        int a = 0;
+        int b = 0;
+        boolean rolled = false;
+
+        while (true) {
+            if (pos + blockSize > len) {
+                // slide the unencoded data to the start of the buffer and read more
+                flushLiteral(buf, literal, pos);
+                System.arraycopy(buf, pos, buf, 0, len - pos);
+                len = fill(in, buf, len - pos);
+                pos = 0;
+                literal = 0;
+                if (blockSize > len) break;
+            }
+            if (!rolled) {
+                a = 1;
+                b = 0;
+                for (int i = pos; i < pos + blockSize; i++) {
+                    a = (a + (buf[i] & 0xFF)) % MODULUS;
+                    b = (b + a) % MODULUS;
+                }
+                rolled = true;
+            }
+
+            int match = findBlock((b << 16) | a, buf, pos);
+            if (match >= 0) {
+                flushLiteral(buf, literal, pos);
+                addCopy(match);
+                pos += blockSize;
+                literal = pos;
+                rolled = false;
+                continue;
+            }
+
+            if (pos + blockSize == len) {
+                // need the next byte to roll the checksum
+                flushLiteral(buf, literal, pos);
+                System.arraycopy(buf, pos, buf, 0, len - pos);
+                len = fill(in, buf, len - pos);
+                pos = 0;
+                literal = 0;
+                if (blockSize == len) {
+                    pos = len;
+                    break;
+                }
+            }
+            int outByte = buf[pos] & 0xFF;
+            int inByte = buf[pos + blockSize] & 0xFF;
+            a = Math.floorMod(a - outByte + inByte, MODULUS);
+            b = (int) Math.floorMod(b - (long) blockSize * outByte + a - 1, MODULUS);
+            pos++;
+            if (pos - literal >= MAX_LITERAL) {
+                flushLiteral(buf, literal, pos);
+                literal = pos;
+            }
+        }
+
+        flushLiteral(buf, literal, len);
+        flushCopy();
+        out.writeByte('E');
+        out.flush();
+        deltaSize += 1;
+        return toHex(sha256.digest());
+    }
+
+    /**
+     * Find the remote block that matches the window at the specified position.
+     *
+     * @param weak rolling checksum of the window
+     * @param buf data buffer
+     * @param pos window position
+     * @return index of the matching block; -1 if none
+     */
+    private int findBlock(int weak, byte[] buf, int pos) {
+        List<Integer> candidates = weakIndex.get(weak);
+        if (candidates == null) return -1;
+        md5.update(buf, pos, blockSize);
+        byte[] strong = md5.digest();
+        for (int index : candidates) {
+            if (MessageDigest.isEqual(strong, strongSums.get(index))) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Add a copy of the specified remote block, extending the pending copy if it's the next consecutive block.
+     *
+     * @param index remote block index
+     * @throws IOException if an I/O error occurs
+     */
+    private void addCopy(int index) throws IOException {
+        if (copyCount > 0 && copyIndex + copyCount == index && copyCount < Integer.MAX_VALUE / blockSize) {
+            copyCount++;
+        } else {
+            flushCopy();
+            copyIndex = index;
+            copyCount = 1;
+        }
+    }
+
+    /**
+     * Write the pending copy instruction (if any).
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    private void flushCopy() throws IOException {
+        if (copyCount > 0) {
+            out.writeByte('C');
+            out.writeLong(copyIndex);
+            out.writeInt(copyCount);
+            deltaSize += 13;
+            copyCount = 0;
+        }
+    }
+
+    /**
+     * Write the specified range of the buffer as literal data (if it isn't empty).
+     *
+     * @param buf data buffer
+     * @param from start of the literal data
+     * @param to end of the literal data
+     * @throws IOException if an I/O error occurs
+     */
+    private void flushLiteral(byte[] buf, int from, int to) throws IOException {
+        if (to > from) {
+            flushCopy();
+            out.writeByte('L');
+            out.writeInt(to - from);
+            out.write(buf, from, to - from);
+            deltaSize += 5 + to - from;
+        }
+    }
+
+    /**
+     * Fill the specified buffer from the specified stream, updating the SHA-256 checksum of the content.
+     *
+     * @param in input stream
+     * @param buf data buffer
+     * @param len length of the data already in the buffer
+     * @return length of the data in the buffer
+     * @throws IOException if an I/O error occurs
+     */
+    private int fill(InputStream in, byte[] buf, int len) throws IOException {
+        int count;
+        while (len < buf.length && (count = in.read(buf, len, buf.length - len)) != -1) {
+            sha256.update(buf, len, count);
+            len += count;
+        }
+        return len;
+    }
+
+    /**
+     * Convert the specified hexadecimal string to bytes.
+     *
+     * @param hex hexadecimal string
+     * @return byte array
+     */
+    private static byte[] fromHex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+
+    /**
+     * Convert the specified bytes to a lower-case hexadecimal string.
+     *
+     * @param bytes byte array
+     * @return hexadecimal string
+     */
+    static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
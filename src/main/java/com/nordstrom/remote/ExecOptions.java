@@ -0,0 +1,120 @@
+package com.nordstrom.remote;
+
+import java.util.concurrent.Executor;
+
+import com.nordstrom.remote.RemoteConfig.RemoteSettings;
+
+/**
+ * This class specifies options for executing a command on many hosts via
+ * {@link SshUtils#execAll(java.util.Collection, String, ExecOptions) execAll}.
+ *
+ * <pre><code>    ExecOptions options = new ExecOptions().setConcurrency(64).setHostTimeout(30000).setFailFast(true);</code></pre>
+ */
+public class ExecOptions {
+
+    private int concurrency;
+    private long hostTimeout;
+    private boolean failFast;
+    private Executor executor;
+
+    /**
+     * Constructor for remote execution options with concurrency from the <b>FANOUT_CONCURRENCY</b> setting and
+     * host timeout from the <b>COMPLETION_TIMEOUT</b> setting.
+     */
+    public ExecOptions() {
+        RemoteConfig config = RemoteConfig.getConfig();
+        concurrency = config.getInt(RemoteSettings.FANOUT_CONCURRENCY.key());
+        hostTimeout = config.getLong(RemoteSettings.COMPLETION_TIMEOUT.key());
+    }
+
+    /**
+     * Get the maximum number of hosts on which the command runs concurrently.
+     *
+     * @return concurrency limit
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Set the maximum number of hosts on which the command runs concurrently.
+     *
+     * @param concurrency concurrency limit
+     * @return this {@link ExecOptions} object
+     */
+    public ExecOptions setConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be positive: " + concurrency);
+        }
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * Get the maximum interval for the command to complete on each host.
+     *
+     * @return host timeout in milliseconds; 0 to wait indefinitely
+     */
+    public long getHostTimeout() {
+        return hostTimeout;
+    }
+
+    /**
+     * Set the maximum interval for the command to complete on each host.
+     * <p>
+     * <b>NOTE</b>: This interval applies to command execution. Connection is bounded by the
+     * <b>SESSION_CONNECT_TIMEOUT</b> setting.
+     *
+     * @param hostTimeout host timeout in milliseconds; 0 to wait indefinitely
+     * @return this {@link ExecOptions} object
+     */
+    public ExecOptions setHostTimeout(long hostTimeout) {
+        this.hostTimeout = hostTimeout;
+        return this;
+    }
+
+    /**
+     * Determine if execution stops at the first host failure.
+     *
+     * @return 'true' for fail-fast mode; 'false' for collect-all mode
+     */
+    public boolean isFailFast() {
+        return failFast;
+    }
+
+    /**
+     * Specify whether execution stops at the first host failure.
+     * <p>
+     * In fail-fast mode, the first failure cancels execution on the remaining hosts and is thrown by the result
+     * stream. In collect-all mode (the default), failures are reported as results.
+     *
+     * @param failFast 'true' for fail-fast mode; 'false' for collect-all mode
+     * @return this {@link ExecOptions} object
+     */
+    public ExecOptions setFailFast(boolean failFast) {
+        this.failFast = failFast;
+        return this;
+    }
+
+    /**
+     * Get the executor that runs host tasks.
+     *
+     * @return host task executor; 'null' to use dedicated threads (virtual on Java 21+)
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Set the executor that runs host tasks.
+     * <p>
+     * <b>NOTE</b>: No more than {@link #getConcurrency() concurrency} tasks are submitted to the executor at once.
+     *
+     * @param executor host task executor; 'null' to use dedicated threads (virtual on Java 21+)
+     * @return this {@link ExecOptions} object
+     */
+    public ExecOptions setExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+}
@@ -0,0 +1,158 @@
+package com.nordstrom.remote;
+
+/**
+ * This class records the outcome of executing a command on one host via
+ * {@link SshUtils#execAll(java.util.Collection, String, ExecOptions) execAll}, {@link RemoteShell#run(String)}, or
+ * {@link SshUtils#execPipelined(String, java.util.List) execPipelined}.
+ */
+public class ExecResult {
+
+    private final String maskedUri;
+    private final String output;
+    private final String errorOutput;
+    private final int exitStatus;
+    private final RuntimeException exception;
+    private final long startTime;
+    private final long connectMillis;
+    private final long totalMillis;
+
+    /**
+     * Constructor for remote execution result
+     *
+     * @param maskedUri remote task URI (password redacted)
+     * @param output output from the remote task (may be 'null')
+     * @param exitStatus exit status of the remote task; -1 if unavailable
+     * @param exception exception thrown by the remote task (may be 'null')
+     * @param startTime start time of the remote task (epoch milliseconds)
+     * @param connectMillis interval spent establishing the session
+     * @param totalMillis total interval spent on the remote task, including connection
+     */
+    ExecResult(String maskedUri, String output, int exitStatus, RuntimeException exception,
+            long startTime, long connectMillis, long totalMillis) {
+        this(maskedUri, output, null, exitStatus, exception, startTime, connectMillis, totalMillis);
+    }
+
+    /**
+     * Constructor for remote execution result with separate standard error
+     *
+     * @param maskedUri remote task URI (password redacted)
+     * @param output output from the remote task (may be 'null')
+     * @param errorOutput standard error output from the remote task (may be 'null')
+     * @param exitStatus exit status of the remote task; -1 if unavailable
+     * @param exception exception thrown by the remote task (may be 'null')
+     * @param startTime start time of the remote task (epoch milliseconds)
+     * @param connectMillis interval spent establishing the session
+     * @param totalMillis total interval spent on the remote task, including connection
+     */
+    ExecResult(String maskedUri, String output, String errorOutput, int exitStatus, RuntimeException exception,
+            long startTime, long connectMillis, long totalMillis) {
+        this.maskedUri = maskedUri;
+        this.output = output;
+        this.errorOutput = errorOutput;
+        this.exitStatus = exitStatus;
+        this.exception = exception;
+        this.startTime = startTime;
+        this.connectMillis = connectMillis;
+        this.totalMillis = totalMillis;
+    }
+
+    /**
+     * Get the masked URI of the remote task.
+     * <p>
+     * <b>NOTE</b>: The password is redacted from the remote task URI.
+     *
+     * @return remote task URI (password redacted)
+     */
+    public String getMaskedUri() {
+        return maskedUri;
+    }
+
+    /**
+     * Get the output of the remote task.
+     * <p>
+     * <b>NOTE</b>: For failed tasks, this is the task output recorded by the exception (if any).
+     *
+     * @return output of the remote task (may be 'null')
+     */
+    public String getOutput() {
+        return output;
+    }
+
+    /**
+     * Get the standard error output of the remote task, if it was captured separately.
+     *
+     * @return standard error output of the remote task; 'null' if not captured separately
+     */
+    public String getErrorOutput() {
+        return errorOutput;
+    }
+
+    /**
+     * Get the exit status of the remote task.
+     *
+     * @return exit status of the remote task; -1 if unavailable
+     */
+    public int getExitStatus() {
+        return exitStatus;
+    }
+
+    /**
+     * Get the exception thrown by the remote task.
+     *
+     * @return exception thrown by the remote task; 'null' if the task succeeded
+     */
+    public RuntimeException getException() {
+        return exception;
+    }
+
+    /**
+     * Determine if the remote task succeeded.
+     *
+     * @return 'true' if the task completed with exit status 0; otherwise 'false'
+     */
+    public boolean isSuccess() {
+        return (exception == null);
+    }
+
+    /**
+     * Get the start time of the remote task.
+     *
+     * @return start time (epoch milliseconds)
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Get the interval spent establishing the session for the remote task.
+     *
+     * @return connection interval in milliseconds
+     */
+    public long getConnectMillis() {
+        return connectMillis;
+    }
+
+    /**
+     * Get the interval spent executing the remote task, excluding connection.
+     *
+     * @return execution interval in milliseconds
+     */
+    public long getExecMillis() {
+        return totalMillis - connectMillis;
+    }
+
+    /**
+     * Get the total interval spent on the remote task, including connection.
+     *
+     * @return total interval in milliseconds
+     */
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: exit status %d in %d ms (connect %d ms)%s", maskedUri, exitStatus, totalMillis,
+                connectMillis, (exception != null) ? " => " + exception.getMessage() : "");
+    }
+}
@@ -0,0 +1,514 @@
+package com.nordstrom.remote;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.nordstrom.remote.SshUtils.ChannelStreams;
+
+/**
+ * This class is a declarative expect/send script for an interactive channel. A script is a sequence of steps:
+ * <ul>
+ *     <li><b>send</b> steps write a line to the remote host. Consecutive sends are pipelined: they're written
+ *     together, without waiting for the remote host to respond to each of them.</li>
+ *     <li><b>expect</b> steps wait for one of several alternative prompts (<i>branches</i>), each with its own
+ *     reaction. A step advances as soon as one of its prompts matches, and fails if none of them matches within the
+ *     timeout of the step (unless the step is optional).</li>
+ * </ul>
+ * A branch can send a response when it matches (e.g. - a password), and then continue with the next step, wait
+ * again on the same step, stop the script, or fail the script.
+ *
+ * <pre><code>    ExpectScript script = new ExpectScript()
+ *            .expect(30000,
+ *                    ExpectScript.regex("[Pp]assword.*: ?$").thenSend(password).thenRepeat(),
+ *                    ExpectScript.literal("Sorry, try again").thenFail("sudo authentication failed"),
+ *                    ExpectScript.literal("admin@host:"))
+ *            .send("cd /work/dir/path")
+ *            .send("./script.ksh")
+ *            .expect("admin@host:", 1000)
+ *            .expect("admin@host:", -1);
+ *    ExpectScript.Result result = script.run(session.getChannelStream());</code></pre>
+ *
+ * Each step captures a copy of its branches when it's added, so changes to a {@link Branch} object afterward don't
+ * affect the script. Running a script doesn't change it, so a script can be run any number of times, on any number
+ * of channels concurrently, provided that no steps are added while it's running. Each run records the output
+ * received and the time spent for each expect step.
+ */
+public class ExpectScript {
+
+    private final List<Step> steps = new ArrayList<>();
+
+    /**
+     * Create a branch that matches the specified literal prompt.
+     *
+     * @param prompt literal prompt text
+     * @return new {@link Branch} object
+     */
+    public static Branch literal(String prompt) {
+        if ((prompt == null) || prompt.isEmpty()) {
+            throw new IllegalArgumentException("Literal prompt must be non-empty");
+        }
+        return new Branch(prompt, false);
+    }
+
+    /**
+     * Create a branch that matches the specified regular expression prompt, anchored to the end of the output.
+     *
+     * @param regex regular expression for the prompt
+     * @return new {@link Branch} object
+     * @see PromptMatcher#regex(String)
+     */
+    public static Branch regex(String regex) {
+        return new Branch(regex, true);
+    }
+
+    /**
+     * Add a step that sends the specified line to the remote host, followed by a line feed.
+     *
+     * @param line line of text to be sent
+     * @return this {@link ExpectScript} object
+     */
+    public ExpectScript send(String line) {
+        steps.add(new Step(line));
+        return this;
+    }
+
+    /**
+     * Add a step that waits for the specified literal prompt.
+     *
+     * @param prompt literal prompt text
+     * @param timeout maximum interval in milliseconds to wait for the prompt; -1 to wait indefinitely
+     * @return this {@link ExpectScript} object
+     */
+    public ExpectScript expect(String prompt, long timeout) {
+        return expect(timeout, literal(prompt));
+    }
+
+    /**
+     * Add a step that waits for any of the specified branches to match. The script fails if none of them matches
+     * within the specified timeout.
+     *
+     * @param timeout maximum interval in milliseconds to wait for a match; -1 to wait indefinitely
+     * @param branches alternative branches, in order of precedence
+     * @return this {@link ExpectScript} object
+     */
+    public ExpectScript expect(long timeout, Branch... branches) {
+        steps.add(new Step(timeout, true, branches));
+        return this;
+    }
+
+    /**
+     * Add a step that waits for any of the specified branches to match. If none of them matches within the
+     * specified timeout, the script continues with the next step.
+     *
+     * @param timeout maximum interval in milliseconds to wait for a match
+     * @param branches alternative branches, in order of precedence
+     * @return this {@link ExpectScript} object
+     */
+    public ExpectScript expectOptional(long timeout, Branch... branches) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Optional steps require a timeout: " + timeout);
+        }
+        steps.add(new Step(timeout, false, branches));
+        return this;
+    }
+
+    /**
+     * Get the number of steps in this script.
+     *
+     * @return step count
+     */
+    public int size() {
+        return steps.size();
+    }
+
+    /**
+     * Run this script on the specified channel streams.
+     *
+     * @param streams channel I/O object
+     * @return script result
+     * @throws RemoteExpectFailedException if a required step times out, the channel closes, or a failure branch
+     *     matches
+     * @throws InterruptedException if this thread was interrupted
+     * @throws IOException if an I/O error occurs
+     */
+    public Result run(ChannelStreams<?> streams) throws InterruptedException, IOException {
+        Result result = new Result();
+        StringBuilder sends = new StringBuilder();
+        for (int index = 0; index < steps.size(); index++) {
+            Step step = steps.get(index);
+            if (step.line != null) {
+                if (sends.length() > 0) sends.append('\n');
+                sends.append(step.line);
+                continue;
+            }
+            if (sends.length() > 0) {
+                streams.writeln(sends.toString());
+                sends.setLength(0);
+            }
+            if (!expect(streams, index, step, result)) {
+                return result;
+            }
+        }
+        if (sends.length() > 0) {
+            streams.writeln(sends.toString());
+        }
+        return result;
+    }
+
+    /**
+     * Run the specified expect step.
+     *
+     * @param streams channel I/O object
+     * @param index step index
+     * @param step expect step
+     * @param result script result, to which the result of this step is added
+     * @return 'false' if a branch stopped the script; otherwise 'true'
+     * @throws RemoteExpectFailedException if the step fails
+     * @throws InterruptedException if this thread was interrupted
+     * @throws IOException if an I/O error occurs
+     */
+    private static boolean expect(ChannelStreams<?> streams, int index, Step step, Result result)
+                    throws InterruptedException, IOException {
+        PromptMatcher matcher = step.newMatcher();
+        StringBuilder output = new StringBuilder();
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(step.timeout);
+        int repeats = 0;
+        while (true) {
+            long remaining = -1;
+            if (step.timeout != -1) {
+                remaining = Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+            }
+            PromptMatcher.Match match = streams.waitForPrompt(matcher, remaining, output::append);
+            if (match == null) {
+                result.add(new StepResult(index, null, repeats, output.toString(), System.nanoTime() - start));
+                if (step.required) {
+                    throw new RemoteExpectFailedException(
+                            "Step " + index + " didn't receive any of " + step.describe() + " within "
+                                    + step.timeout + " ms", index, result);
+                }
+                return true;
+            }
+
+            Branch branch = step.branches[match.getIndex()];
+            if (branch.response != null) {
+                streams.writeln(branch.response);
+            }
+            if (branch.action == Action.REPEAT) {
+                repeats++;
+                continue;
+            }
+            result.add(new StepResult(index, match, repeats, output.toString(), System.nanoTime() - start));
+            switch (branch.action) {
+                case FAIL:
+                    throw new RemoteExpectFailedException("Step " + index + " matched failure prompt ["
+                            + branch.prompt + "]: " + branch.message, index, result);
+                case STOP:
+                    result.stopped = true;
+                    return false;
+                default:
+                    return true;
+            }
+        }
+    }
+
+    /**
+     * This enumeration defines the reactions of a branch after its prompt matches and its response (if any) has
+     * been sent.
+     */
+    private enum Action {
+        /** continue with the next step */
+        NEXT,
+        /** wait again on the same step */
+        REPEAT,
+        /** stop the script */
+        STOP,
+        /** fail the script */
+        FAIL
+    }
+
+    /**
+     * This class is an alternative branch of an expect step: a prompt, and the reaction when it matches.
+     */
+    public static class Branch {
+        private final String prompt;
+        private final boolean isRegex;
+        private String response;
+        private Action action = Action.NEXT;
+        private String message;
+
+        private Branch(String prompt, boolean isRegex) {
+            this.prompt = prompt;
+            this.isRegex = isRegex;
+        }
+
+        /**
+         * Create a copy of this branch.
+         *
+         * @return new {@link Branch} object with the prompt and reaction of this branch
+         */
+        private Branch copy() {
+            Branch copy = new Branch(prompt, isRegex);
+            copy.response = response;
+            copy.action = action;
+            copy.message = message;
+            return copy;
+        }
+
+        /**
+         * Send the specified line to the remote host when this branch matches.
+         *
+         * @param line line of text to be sent
+         * @return this {@link Branch} object
+         */
+        public Branch thenSend(String line) {
+            this.response = line;
+            return this;
+        }
+
+        /**
+         * Wait again on the same step after this branch matches (e.g. - to answer a pager or a password prompt,
+         * and then wait for the shell prompt). The timeout of the step still applies.
+         *
+         * @return this {@link Branch} object
+         */
+        public Branch thenRepeat() {
+            this.action = Action.REPEAT;
+            return this;
+        }
+
+        /**
+         * Stop the script successfully after this branch matches.
+         *
+         * @return this {@link Branch} object
+         */
+        public Branch thenStop() {
+            this.action = Action.STOP;
+            return this;
+        }
+
+        /**
+         * Fail the script with the specified message after this branch matches.
+         *
+         * @param message failure message
+         * @return this {@link Branch} object
+         */
+        public Branch thenFail(String message) {
+            this.action = Action.FAIL;
+            this.message = message;
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return (isRegex ? "regex " : "literal ") + "[" + prompt + "]";
+        }
+    }
+
+    /**
+     * This class is a step of an expect script.
+     */
+    private static class Step {
+        private final String line;
+        private final long timeout;
+        private final boolean required;
+        private final Branch[] branches;
+
+        Step(String line) {
+            this.line = line;
+            this.timeout = 0;
+            this.required = false;
+            this.branches = null;
+        }
+
+        Step(long timeout, boolean required, Branch[] branches) {
+            if (branches.length == 0) {
+                throw new IllegalArgumentException("Expect steps require at least one branch");
+            }
+            this.line = null;
+            this.timeout = timeout;
+            this.required = required;
+            this.branches = new Branch[branches.length];
+            for (int i = 0; i < branches.length; i++) {
+                this.branches[i] = branches[i].copy();
+            }
+        }
+
+        PromptMatcher newMatcher() {
+            PromptMatcher matcher = new PromptMatcher();
+            for (Branch branch : branches) {
+                if (branch.isRegex) {
+                    matcher.regex(branch.prompt);
+                } else {
+                    matcher.literal(branch.prompt);
+                }
+            }
+            return matcher;
+        }
+
+        String describe() {
+            StringBuilder builder = new StringBuilder();
+            for (Branch branch : branches) {
+                if (builder.length() > 0) builder.append(", ");
+                builder.append(branch);
+            }
+            return builder.toString();
+        }
+    }
+
+    /**
+     * This class records the outcome of an expect step.
+     */
+    public static class StepResult {
+        private final int index;
+        private final PromptMatcher.Match match;
+        private final int repeats;
+        private final String output;
+        private final long nanos;
+
+        StepResult(int index, PromptMatcher.Match match, int repeats, String output, long nanos) {
+            this.index = index;
+            this.match = match;
+            this.repeats = repeats;
+            this.output = output;
+            this.nanos = nanos;
+        }
+
+        /**
+         * Get the index of this step in its script.
+         *
+         * @return step index
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Get the prompt match that completed this step.
+         *
+         * @return prompt match; 'null' if the step timed out or the channel closed
+         */
+        public PromptMatcher.Match getMatch() {
+            return match;
+        }
+
+        /**
+         * Get the number of times this step matched a repeating branch before it completed.
+         *
+         * @return repeat count
+         */
+        public int getRepeats() {
+            return repeats;
+        }
+
+        /**
+         * Get the output received during this step, up to and including the matched prompt.
+         *
+         * @return step output
+         */
+        public String getOutput() {
+            return output;
+        }
+
+        /**
+         * Get the interval spent on this step.
+         *
+         * @return step interval in nanoseconds
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * Get the interval spent on this step.
+         *
+         * @return step interval in milliseconds
+         */
+        public long getMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(nanos);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("step %d: %s in %.3f ms", index, (match != null) ? match : "no match",
+                    nanos / 1e6);
+        }
+    }
+
+    /**
+     * This class records the outcome of an expect script.
+     */
+    public static class Result {
+        private final List<StepResult> steps = new ArrayList<>();
+        private boolean stopped;
+
+        void add(StepResult step) {
+            steps.add(step);
+        }
+
+        /**
+         * Get the results of the expect steps that were run, in order.
+         *
+         * @return list of step results
+         */
+        public List<StepResult> getSteps() {
+            return Collections.unmodifiableList(steps);
+        }
+
+        /**
+         * Get the result of the last expect step that was run.
+         *
+         * @return last step result; 'null' if no expect steps were run
+         */
+        public StepResult getLastStep() {
+            return steps.isEmpty() ? null : steps.get(steps.size() - 1);
+        }
+
+        /**
+         * Get all of the output received while running the script.
+         *
+         * @return script output
+         */
+        public String getOutput() {
+            StringBuilder builder = new StringBuilder();
+            for (StepResult step : steps) {
+                builder.append(step.getOutput());
+            }
+            return builder.toString();
+        }
+
+        /**
+         * Get the total interval spent on the expect steps of the script.
+         *
+         * @return total interval in milliseconds
+         */
+        public long getMillis() {
+            long nanos = 0;
+            for (StepResult step : steps) {
+                nanos += step.getNanos();
+            }
+            return TimeUnit.NANOSECONDS.toMillis(nanos);
+        }
+
+        /**
+         * Determine if a branch stopped the script before its last step.
+         *
+         * @return 'true' if the script was stopped; otherwise 'false'
+         */
+        public boolean isStopped() {
+            return stopped;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            for (StepResult step : steps) {
+                builder.append(step).append('\n');
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.nordstrom.remote;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.jcraft.jsch.ChannelExec;
+import com.nordstrom.remote.SshUtils.ChannelType;
+import com.nordstrom.remote.SshUtils.SessionHolder;
+
+/**
+ * This class executes a command on many hosts with bounded concurrency, publishing per-host results as they
+ * complete. It implements {@link SshUtils#execAll(Collection, String, ExecOptions) execAll}.
+ * <p>
+ * Concurrency is bounded by running {@link ExecOptions#getConcurrency() concurrency} workers, each of which pulls
+ * hosts from a shared queue until it's exhausted. This never blocks executor threads waiting for a permit, so the
+ * workers can safely share a caller-supplied executor.
+ */
+class FanOut {
+
+    private static final AtomicInteger POOL_INDEX = new AtomicInteger();
+
+    private final Queue<URI> pending;
+    private final int hostCount;
+    private final String command;
+    private final ExecOptions options;
+    private final BlockingQueue<ExecResult> results = new LinkedBlockingQueue<>();
+    private final Set<SessionHolder<ChannelExec>> active = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled;
+
+    /**
+     * Constructor for command fan-out
+     *
+     * @param hosts SSH connection URIs of target hosts
+     * @param command command to be executed
+     * @param options remote execution options
+     */
+    FanOut(Collection<URI> hosts, String command, ExecOptions options) {
+        this.pending = new ConcurrentLinkedQueue<>(hosts);
+        this.hostCount = hosts.size();
+        this.command = command;
+        this.options = options;
+    }
+
+    /**
+     * Start executing the command on the target hosts.
+     *
+     * @return this {@link FanOut} object
+     */
+    FanOut start() {
+        int workers = Math.min(options.getConcurrency(), hostCount);
+        if (workers == 0) return this;
+
+        Executor executor = options.getExecutor();
+        ExecutorService ownExecutor = null;
+        if (executor == null) {
+            // one thread per worker; virtual threads on Java 21+
+            ownExecutor = RemoteThreads.newExecutor("remote-session-fanout-" + POOL_INDEX.incrementAndGet());
+            executor = ownExecutor;
+        }
+
+        for (int i = 0; i < workers; i++) {
+            executor.execute(this::work);
+        }
+        if (ownExecutor != null) {
+            // threads exit when the workers finish
+            ownExecutor.shutdown();
+        }
+        return this;
+    }
+
+    /**
+     * Get a stream of per-host results in completion order.
+     * <p>
+     * <b>NOTE</b>: In fail-fast mode, the stream throws the exception of the first failed host after cancelling
+     * execution on the remaining hosts. Closing the stream before it's exhausted also cancels execution.
+     *
+     * @return stream of {@link ExecResult} objects
+     */
+    Stream<ExecResult> stream() {
+        Iterator<ExecResult> iterator = new Iterator<ExecResult>() {
+            private int received;
+
+            @Override
+            public boolean hasNext() {
+                return (received < hostCount) && !cancelled;
+            }
+
+            @Override
+            public ExecResult next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ExecResult result;
+                try {
+                    result = results.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    cancel();
+                    throw new IllegalStateException("Interrupted waiting for remote execution results", e);
+                }
+                received++;
+                if (options.isFailFast() && !result.isSuccess()) {
+                    cancel();
+                    throw result.getException();
+                }
+                return result;
+            }
+        };
+
+        // not SIZED: cancellation truncates the stream, and terminal operations must consume it to observe failures
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.NONNULL), false)
+                .onClose(this::cancel);
+    }
+
+    /**
+     * Cancel execution on hosts that haven't completed.
+     * <p>
+     * <b>NOTE</b>: Hosts that haven't started are skipped, and channels of hosts that are running are disconnected.
+     */
+    void cancel() {
+        cancelled = true;
+        pending.clear();
+        for (SessionHolder<ChannelExec> session : active) {
+            session.getChannel().disconnect();
+        }
+    }
+
+    /**
+     * Worker loop that executes the command on queued hosts until the queue is exhausted or execution is cancelled.
+     */
+    private void work() {
+        URI uri;
+        while (!cancelled && ((uri = pending.poll()) != null)) {
+            results.add(exec(uri));
+        }
+    }
+
+    /**
+     * Execute the command on the specified host.
+     *
+     * @param uri SSH connection URI of target host
+     * @return result of remote execution
+     */
+    private ExecResult exec(URI uri) {
+        String maskedUri = SessionHolder.getMaskedUri(uri);
+        long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        long connectMillis = 0;
+        try (SessionHolder<ChannelExec> session = new SessionHolder<>(ChannelType.EXEC, uri)) {
+            connectMillis = elapsedMillis(startNanos);
+            session.setTimeout(options.getHostTimeout());
+            active.add(session);
+            try {
+                String output = SshUtils.exec(session, SshUtils.inWorkDir(session, command));
+                return new ExecResult(maskedUri, output, session.getExitStatus(), null,
+                        startTime, connectMillis, elapsedMillis(startNanos));
+            } finally {
+                active.remove(session);
+            }
+        } catch (RemoteExecutionFailedException e) {
+            return new ExecResult(maskedUri, e.getTaskOutput(), e.getExitStatus(), e,
+                    startTime, connectMillis, elapsedMillis(startNanos));
+        } catch (RuntimeException e) {
+            return new ExecResult(maskedUri, null, -1, e, startTime, connectMillis, elapsedMillis(startNanos));
+        }
+    }
+
+    /**
+     * Get the number of milliseconds elapsed since the specified time.
+     *
+     * @param startNanos start time from {@link System#nanoTime()}
+     * @return elapsed milliseconds
+     */
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+}
@@ -0,0 +1,49 @@
+package com.nordstrom.remote;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * This class records the modification time and size of a file, so that changes to the file can be detected with a
+ * single attribute read.
+ */
+class FileStamp {
+
+    private final Path path;
+    private final long modified;
+    private final long size;
+
+    private FileStamp(Path path, long modified, long size) {
+        this.path = path;
+        this.modified = modified;
+        this.size = size;
+    }
+
+    /**
+     * Get the current stamp of the specified file.
+     *
+     * @param path file path (may be 'null')
+     * @return file stamp; 'null' if path is 'null'
+     */
+    static FileStamp of(Path path) {
+        if (path == null) return null;
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            return new FileStamp(path, attrs.lastModifiedTime().toMillis(), attrs.size());
+        } catch (IOException e) {
+            return new FileStamp(path, -1, -1);
+        }
+    }
+
+    /**
+     * Determine if the file has changed since this stamp was recorded.
+     *
+     * @return 'true' if the file has been modified, resized, or deleted; otherwise 'false'
+     */
+    boolean isChanged() {
+        FileStamp current = of(path);
+        return (current.modified != modified) || (current.size != size);
+    }
+}
@@ -0,0 +1,195 @@
+package com.nordstrom.remote;
+
+import java.lang.reflect.Constructor;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.UserInfo;
+import com.nordstrom.remote.RemoteConfig.RemoteSettings;
+
+/**
+ * This class caches configured {@link JSch} instances, with the private key identity already decrypted and the
+ * shared {@link KnownHostsRepository} for the known hosts file attached. Entries are keyed on the effective key,
+ * public key, known hosts, trust strategy, and pass-phrase settings, so creating a session only pays for network
+ * work.
+ * <p>
+ * Each entry records the modification time and size of the key files it was built from. An entry is rebuilt when
+ * either of these files changes; the known hosts repository reloads its own file when it changes. Configured files
+ * that were missing are looked for again at most once per second, and the entry is rebuilt if any of them appear.
+ */
+final class IdentityCache {
+
+    private static final long MISSING_CHECK_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final Map<List<String>, Entry> ENTRIES = new ConcurrentHashMap<>();
+    private static final Map<String, Constructor<? extends UserInfo>> USER_INFO = new ConcurrentHashMap<>();
+
+    private IdentityCache() {
+        throw new AssertionError("IdentityCache is a static utility class that cannot be instantiated");
+    }
+
+    /**
+     * Get the cache entry for the current identity settings, building it if needed.
+     *
+     * @return identity cache entry
+     * @throws JSchException if the private key or known hosts file cannot be loaded
+     */
+    static Entry get() throws JSchException {
+        RemoteConfig config = RemoteConfig.getConfig();
+        List<String> key = Arrays.asList(config.getString(RemoteSettings.SSH_KEY_NAME.key()),
+                config.getString(RemoteSettings.SSH_PUB_NAME.key()),
+                config.getString(RemoteSettings.KNOWN_HOSTS_NAME.key()),
+                config.getString(RemoteSettings.TRUST_STRATEGY.key()),
+                config.getString(RemoteSettings.SSH_KEY_PASS.key()),
+                System.getProperty("user.home"));
+
+        Entry entry = ENTRIES.get(key);
+        if ((entry == null) || !entry.isCurrent(config)) {
+            // concurrent rebuilds are harmless; the last one wins
+            entry = new Entry(config);
+            ENTRIES.put(key, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Create a new instance of the specified {@link UserInfo} implementation, caching its constructor.
+     *
+     * @param userInfoClass fully-qualified name of the {@link UserInfo} implementation
+     * @return new {@link UserInfo} object
+     */
+    static UserInfo newUserInfo(String userInfoClass) {
+        Constructor<? extends UserInfo> constructor = USER_INFO.computeIfAbsent(userInfoClass, name -> {
+            try {
+                return Class.forName(name).asSubclass(UserInfo.class).getDeclaredConstructor();
+            } catch (ClassNotFoundException e) {
+                throw new IllegalArgumentException("UserInfo implementation not found: " + name, e);
+            } catch (ClassCastException e) {
+                throw new IllegalArgumentException("Class does not implement UserInfo: " + name, e);
+            } catch (NoSuchMethodException e) {
+                throw new RuntimeException("Failed to initialize UserInfo: " + name, e);
+            }
+        });
+
+        try {
+            return constructor.newInstance();
+        } catch (Exception e) {
+            // Handles InstantiationException, IllegalAccessException, InvocationTargetException, etc.
+            throw new RuntimeException("Failed to initialize UserInfo: " + userInfoClass, e);
+        }
+    }
+
+    /**
+     * Discard all cached entries.
+     */
+    static void clear() {
+        ENTRIES.clear();
+        USER_INFO.clear();
+    }
+
+    /**
+     * This class holds a configured {@link JSch} instance and the files it was built from.
+     */
+    static class Entry {
+        private final JSch jsch = new JSch();
+        private final Path keyPath;
+        private final Path pubPath;
+        private final Path knownHosts;
+        private final String keyPass;
+        private final FileStamp[] stamps;
+        private volatile long nextMissingCheck = System.nanoTime() + MISSING_CHECK_NANOS;
+
+        /**
+         * Constructor for identity cache entry
+         *
+         * @param config remote configuration object
+         * @throws JSchException if the private key or known hosts file cannot be loaded
+         */
+        Entry(RemoteConfig config) throws JSchException {
+            keyPath = config.getKeyPath();
+            pubPath = config.getPubPath();
+            knownHosts = (keyPath != null) ? config.getKnownHosts() : null;
+            keyPass = config.getString(RemoteSettings.SSH_KEY_PASS.key());
+            // stamp the files before loading them, so a concurrent change triggers a rebuild; the shared known hosts
+            // repository reloads itself
+            stamps = new FileStamp[] { FileStamp.of(keyPath), FileStamp.of(pubPath) };
+
+            // if private key spec'd
+            if (keyPath != null) {
+                byte[] passPhrase = (keyPass != null) ? keyPass.getBytes() : null;
+                // if public key spec'd
+                if (pubPath != null) {
+                    // add identity, specifying public key
+                    jsch.addIdentity(keyPath.toString(), pubPath.toString(), passPhrase);
+                // otherwise (no public key spec'd)
+                } else {
+                    // add identity, omitting public key
+                    jsch.addIdentity(keyPath.toString(), passPhrase);
+                }
+
+                if (knownHosts != null) {
+                    jsch.setHostKeyRepository(KnownHostsRepository.forFile(knownHosts));
+                }
+            }
+        }
+
+        /**
+         * Get the configured {@link JSch} instance of this entry.
+         * <p>
+         * <b>NOTE</b>: This instance is shared by all sessions created with the same identity settings; it must not
+         * be reconfigured.
+         *
+         * @return configured {@link JSch} object
+         */
+        JSch getJSch() {
+            return jsch;
+        }
+
+        /**
+         * Get the private key path of this entry.
+         *
+         * @return SSH private key path; 'null' if none was found
+         */
+        Path getKeyPath() {
+            return keyPath;
+        }
+
+        /**
+         * Get the private key pass-phrase of this entry.
+         *
+         * @return SSH private key pass-phrase; 'null' if none was specified
+         */
+        String getKeyPass() {
+            return keyPass;
+        }
+
+        /**
+         * Determine if this entry still reflects the files it was built from.
+         *
+         * @param config remote configuration object
+         * @return 'true' if this entry is current; otherwise 'false'
+         */
+        private boolean isCurrent(RemoteConfig config) {
+            for (FileStamp stamp : stamps) {
+                if ((stamp != null) && stamp.isChanged()) return false;
+            }
+            long now = System.nanoTime();
+            if (now - nextMissingCheck < 0) return true;
+            nextMissingCheck = now + MISSING_CHECK_NANOS;
+            
+            // check whether configured files that were missing have been created
+            if (keyPath == null) {
+                return config.getKeyPath() == null;
+            }
+            if ((pubPath == null) && (config.getPubPath() != null)) {
+                return false;
+            }
+            return (knownHosts != null) || (config.getKnownHosts() == null);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.nordstrom.remote;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.nordstrom.remote.SshUtils.ChannelType;
+
+/**
+ * This class is a lightweight in-memory {@link MetricsRecorder} that keeps a {@link LatencyHistogram} and a failure
+ * count for each combination of phase, host, and channel type, along with traffic counts for each host.
+ */
+public class InMemoryMetrics implements MetricsRecorder {
+
+    private final Map<Key, Entry> latencies = new ConcurrentHashMap<>();
+    private final Map<String, Traffic> traffic = new ConcurrentHashMap<>();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordLatency(Phase phase, String host, ChannelType channelType, long nanos, boolean success) {
+        Entry entry = latencies.computeIfAbsent(new Key(phase, host, channelType), key -> new Entry());
+        entry.histogram.record(nanos);
+        if (!success) entry.failures.increment();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordBytes(String host, long bytesIn, long bytesOut) {
+        Traffic counts = traffic.computeIfAbsent(host, key -> new Traffic());
+        if (bytesIn != 0) counts.bytesIn.add(bytesIn);
+        if (bytesOut != 0) counts.bytesOut.add(bytesOut);
+    }
+
+    /**
+     * Get the latency histogram for the specified phase, host, and channel type.
+     *
+     * @param phase measured phase
+     * @param host remote host, as "host:port"; 'null' to merge all hosts
+     * @param channelType channel type; 'null' to merge all channel types
+     * @return latency histogram (a snapshot if merged); empty if nothing has been recorded
+     */
+    public LatencyHistogram getHistogram(Phase phase, String host, ChannelType channelType) {
+        if ((host != null) && (channelType != null)) {
+            Entry entry = latencies.get(new Key(phase, host, channelType));
+            return (entry != null) ? entry.histogram : new LatencyHistogram();
+        }
+        LatencyHistogram merged = new LatencyHistogram();
+        for (Map.Entry<Key, Entry> entry : latencies.entrySet()) {
+            if (entry.getKey().matches(phase, host, channelType)) {
+                merged.add(entry.getValue().histogram);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Get the number of failures recorded for the specified phase, host, and channel type.
+     *
+     * @param phase measured phase
+     * @param host remote host, as "host:port"; 'null' to include all hosts
+     * @param channelType channel type; 'null' to include all channel types
+     * @return failure count
+     */
+    public long getFailures(Phase phase, String host, ChannelType channelType) {
+        long failures = 0;
+        for (Map.Entry<Key, Entry> entry : latencies.entrySet()) {
+            if (entry.getKey().matches(phase, host, channelType)) {
+                failures += entry.getValue().failures.sum();
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Get the number of bytes received from the specified host.
+     *
+     * @param host remote host, as "host:port"; 'null' to include all hosts
+     * @return byte count
+     */
+    public long getBytesIn(String host) {
+        long bytes = 0;
+        for (Map.Entry<String, Traffic> entry : traffic.entrySet()) {
+            if ((host == null) || host.equals(entry.getKey())) {
+                bytes += entry.getValue().bytesIn.sum();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Get the number of bytes sent to the specified host.
+     *
+     * @param host remote host, as "host:port"; 'null' to include all hosts
+     * @return byte count
+     */
+    public long getBytesOut(String host) {
+        long bytes = 0;
+        for (Map.Entry<String, Traffic> entry : traffic.entrySet()) {
+            if ((host == null) || host.equals(entry.getKey())) {
+                bytes += entry.getValue().bytesOut.sum();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Get the hosts for which metrics have been recorded.
+     *
+     * @return set of hosts, as "host:port"
+     */
+    public Set<String> getHosts() {
+        Set<String> hosts = new TreeSet<>(traffic.keySet());
+        for (Key key : latencies.keySet()) {
+            hosts.add(key.host);
+        }
+        return hosts;
+    }
+
+    /**
+     * Discard all recorded metrics.
+     */
+    public void reset() {
+        latencies.clear();
+        traffic.clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (String host : getHosts()) {
+            builder.append(host).append(": in=").append(getBytesIn(host)).append(" out=")
+                    .append(getBytesOut(host)).append('\n');
+            for (Phase phase : Phase.values()) {
+                for (Map.Entry<Key, Entry> entry : latencies.entrySet()) {
+                    Key key = entry.getKey();
+                    if ((key.phase == phase) && key.host.equals(host)) {
+                        builder.append("  ").append(phase);
+                        if (key.channelType != null) builder.append('/').append(key.channelType);
+                        builder.append(": ").append(entry.getValue().histogram);
+                        long failures = entry.getValue().failures.sum();
+                        if (failures != 0) builder.append(" failures=").append(failures);
+                        builder.append('\n');
+                    }
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * This class is the key for latency metrics.
+     */
+    private static class Key {
+        private final Phase phase;
+        private final String host;
+        private final ChannelType channelType;
+
+        Key(Phase phase, String host, ChannelType channelType) {
+            this.phase = phase;
+            this.host = host;
+            this.channelType = channelType;
+        }
+
+        boolean matches(Phase phase, String host, ChannelType channelType) {
+            return (this.phase == phase) && ((host == null) || host.equals(this.host))
+                    && ((channelType == null) || (channelType == this.channelType));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key) obj;
+            return (phase == other.phase) && Objects.equals(host, other.host) && (channelType == other.channelType);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(phase, host, channelType);
+        }
+    }
+
+    /**
+     * This class holds the latency metrics for a single key.
+     */
+    private static class Entry {
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final LongAdder failures = new LongAdder();
+    }
+
+    /**
+     * This class holds the traffic counts for a single host.
+     */
+    private static class Traffic {
+        private final LongAdder bytesIn = new LongAdder();
+        private final LongAdder bytesOut = new LongAdder();
+    }
+}
@@ -0,0 +1,443 @@
+package com.nordstrom.remote;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jcraft.jsch.HostKey;
+import com.jcraft.jsch.HostKeyRepository;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.UserInfo;
+
+/**
+ * This class is a shared, in-memory {@link HostKeyRepository} for an OpenSSH <i>known_hosts</i> file. The file is
+ * parsed once into an index: plain entries are found by a hash lookup on each of their host names, and the result of
+ * matching a host name against the hashed ({@code |1|salt|hash}) entries is computed once per host name and
+ * remembered. Lookups are lock-free; the file is reloaded when its modification time or size changes.
+ * <p>
+ * Keys added by <b>JSch</b> (e.g. - with the <b>INTERACTIVE</b> trust strategy) are appended to the file, instead of
+ * rewriting the whole file as the built-in <b>JSch</b> repository does. Removal of a changed host key rewrites the
+ * file via a temporary copy.
+ * <p>
+ * <b>NOTE</b>: Like the built-in repository, this implementation matches host names exactly (ignoring case);
+ * wildcard patterns are not expanded. Added keys are stored with plain host names.
+ */
+final class KnownHostsRepository implements HostKeyRepository {
+
+    private static final Logger LOG = LoggerFactory.getLogger(KnownHostsRepository.class);
+    private static final Map<Path, KnownHostsRepository> REPOSITORIES = new ConcurrentHashMap<>();
+    private static final String HASH_MAGIC = "|1|";
+    private static final String HMAC_SHA1 = "HmacSHA1";
+
+    private final Path path;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile Index index;
+    private volatile FileStamp stamp;
+
+    /**
+     * Constructor for known hosts repository
+     *
+     * @param path known hosts file path
+     */
+    private KnownHostsRepository(Path path) {
+        this.path = path;
+        load();
+    }
+
+    /**
+     * Get the shared repository for the specified known hosts file.
+     *
+     * @param path known hosts file path
+     * @return shared known hosts repository
+     */
+    static KnownHostsRepository forFile(Path path) {
+        return REPOSITORIES.computeIfAbsent(path.toAbsolutePath().normalize(), KnownHostsRepository::new);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int check(String host, byte[] key) {
+        if (host == null) return NOT_INCLUDED;
+        String type;
+        try {
+            type = new HostKey(host, key).getType();
+        } catch (JSchException e) {
+            LOG.debug("Unable to determine type of key presented by {}", host, e);
+            return NOT_INCLUDED;
+        }
+
+        int result = NOT_INCLUDED;
+        for (Entry entry : getIndex().find(host)) {
+            if (entry.type.equals(type)) {
+                if (Arrays.equals(entry.key, key)) return OK;
+                result = CHANGED;
+            }
+        }
+        String plainHost = unbracket(host);
+        if ((result == NOT_INCLUDED) && (plainHost != null)) {
+            return check(plainHost, key);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void add(HostKey hostkey, UserInfo userinfo) {
+        Entry entry;
+        try {
+            entry = new Entry(hostkey, Base64.getDecoder().decode(hostkey.getKey()));
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Unable to add key for {} to {}", hostkey.getHost(), path, e);
+            return;
+        }
+        writeLock.lock();
+        try {
+            Index current = getIndex();
+            try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                writer.write(toLine(hostkey));
+            }
+            current.add(entry);
+            // our own append doesn't require a reload
+            stamp = FileStamp.of(path);
+        } catch (IOException e) {
+            LOG.warn("Unable to append key for {} to {}", hostkey.getHost(), path, e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove(String host, String type) {
+        remove(host, type, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove(String host, String type, byte[] key) {
+        writeLock.lock();
+        try {
+            Index current = getIndex();
+            List<String> lines = new ArrayList<>();
+            boolean removed = false;
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    Entry entry = parse(line);
+                    if ((entry != null) && current.matches(entry, host) && ((type == null) || entry.type.equals(type))
+                            && ((key == null) || Arrays.equals(entry.key, key))) {
+                        removed = true;
+                    } else {
+                        lines.add(line);
+                    }
+                }
+            }
+            if (removed) {
+                Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), "known_hosts", ".tmp");
+                Files.write(temp, lines, StandardCharsets.UTF_8);
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                load();
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to remove key for {} from {}", host, path, e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getKnownHostsRepositoryID() {
+        return path.toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public HostKey[] getHostKey() {
+        return getIndex().entries.stream().map(entry -> entry.hostKey).toArray(HostKey[]::new);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public HostKey[] getHostKey(String host, String type) {
+        if (host == null) return getHostKey();
+        List<HostKey> hostKeys = new ArrayList<>();
+        Index current = getIndex();
+        for (String name : new String[] { host, unbracket(host) }) {
+            if (name == null) continue;
+            for (Entry entry : current.find(name)) {
+                if ((type == null) || entry.type.equals(type)) {
+                    hostKeys.add(entry.hostKey);
+                }
+            }
+        }
+        return hostKeys.toArray(new HostKey[0]);
+    }
+
+    /**
+     * Get the index of the known hosts file, reloading it if the file has changed.
+     *
+     * @return known hosts index
+     */
+    private Index getIndex() {
+        if (stamp.isChanged()) {
+            writeLock.lock();
+            try {
+                if (stamp.isChanged()) {
+                    load();
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Load the known hosts file into a new index.
+     */
+    private void load() {
+        FileStamp loaded = FileStamp.of(path);
+        Index loading = new Index();
+        if (Files.exists(path)) {
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    Entry entry = parse(line);
+                    if (entry != null) {
+                        loading.add(entry);
+                    }
+                }
+            } catch (IOException e) {
+                LOG.warn("Unable to read known hosts file {}", path, e);
+            }
+        }
+        index = loading;
+        stamp = loaded;
+        LOG.debug("Loaded {} known host keys from {}", loading.entries.size(), path);
+    }
+
+    /**
+     * Parse the specified line of a known hosts file.
+     *
+     * @param line known hosts line
+     * @return known hosts entry; 'null' for comments, blank lines, and invalid entries
+     */
+    private static Entry parse(String line) {
+        String trimmed = line.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("#")) return null;
+        // fields: [marker] host type key [comment]
+        int i = trimmed.startsWith("@") ? 1 : 0;
+        String[] fields = trimmed.split("[ \t]+", i + 4);
+        if (fields.length < i + 3) return null;
+        String marker = (i == 1) ? fields[0] : "";
+        String comment = (fields.length > i + 3) ? fields[i + 3] : null;
+        try {
+            byte[] key = Base64.getDecoder().decode(fields[i + 2]);
+            HostKey hostKey = new HostKey(marker, fields[i], 0, key, comment);
+            // skip entries whose declared type doesn't match their key
+            return hostKey.getType().equals(fields[i + 1]) ? new Entry(hostKey, key) : null;
+        } catch (JSchException | IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Format the specified host key as a line of a known hosts file.
+     *
+     * @param hostKey host key
+     * @return known hosts line
+     */
+    private static String toLine(HostKey hostKey) {
+        StringBuilder builder = new StringBuilder();
+        String marker = hostKey.getMarker();
+        if ((marker != null) && !marker.isEmpty()) {
+            builder.append(marker).append(' ');
+        }
+        builder.append(hostKey.getHost()).append(' ').append(hostKey.getType()).append(' ').append(hostKey.getKey());
+        if (hostKey.getComment() != null) {
+            builder.append(' ').append(hostKey.getComment());
+        }
+        return builder.append('\n').toString();
+    }
+
+    /**
+     * Get the host name from the specified bracketed "[host]:port" name.
+     *
+     * @param host host name
+     * @return unbracketed host name; 'null' if the specified name isn't bracketed
+     */
+    private static String unbracket(String host) {
+        int end = host.indexOf("]:");
+        return (host.startsWith("[") && (end > 1)) ? host.substring(1, end) : null;
+    }
+
+    /**
+     * This class is an index of the entries in a known hosts file.
+     */
+    private static class Index {
+        private final List<Entry> entries = new CopyOnWriteArrayList<>();
+        private final Map<String, Entry[]> plain = new ConcurrentHashMap<>();
+        private final List<Entry> hashed = new CopyOnWriteArrayList<>();
+        private final Map<String, Entry[]> hashedMatches = new ConcurrentHashMap<>();
+
+        /**
+         * Add the specified entry to this index.
+         *
+         * @param entry known hosts entry
+         */
+        void add(Entry entry) {
+            entries.add(entry);
+            if (entry.salt != null) {
+                hashed.add(entry);
+                hashedMatches.clear();
+            } else {
+                for (String name : entry.hostKey.getHost().split(",")) {
+                    plain.merge(name.trim().toLowerCase(Locale.ROOT), new Entry[] { entry }, Index::concat);
+                }
+            }
+        }
+
+        /**
+         * Find the entries that match the specified host name.
+         *
+         * @param host host name
+         * @return matching entries (may be empty)
+         */
+        List<Entry> find(String host) {
+            Entry[] plainMatches = plain.get(host.toLowerCase(Locale.ROOT));
+            Entry[] hashMatches = hashed.isEmpty() ? null : hashedMatches.computeIfAbsent(host, this::matchHashed);
+            List<Entry> matches = new ArrayList<>();
+            if (plainMatches != null) matches.addAll(Arrays.asList(plainMatches));
+            if (hashMatches != null) matches.addAll(Arrays.asList(hashMatches));
+            return matches;
+        }
+
+        /**
+         * Determine if the specified entry matches the specified host name.
+         *
+         * @param entry known hosts entry
+         * @param host host name
+         * @return 'true' if the entry matches; otherwise 'false'
+         */
+        boolean matches(Entry entry, String host) {
+            if (host == null) return true;
+            if (entry.salt != null) return entry.matchesHash(newMac(), host);
+            for (String name : entry.hostKey.getHost().split(",")) {
+                if (name.trim().equalsIgnoreCase(host)) return true;
+            }
+            return false;
+        }
+
+        /**
+         * Match the specified host name against the hashed entries of this index.
+         *
+         * @param host host name
+         * @return matching hashed entries (may be empty)
+         */
+        private Entry[] matchHashed(String host) {
+            Mac mac = newMac();
+            return hashed.stream().filter(entry -> entry.matchesHash(mac, host)).toArray(Entry[]::new);
+        }
+
+        private static Entry[] concat(Entry[] first, Entry[] second) {
+            Entry[] result = Arrays.copyOf(first, first.length + second.length);
+            System.arraycopy(second, 0, result, first.length, second.length);
+            return result;
+        }
+
+        private static Mac newMac() {
+            try {
+                return Mac.getInstance(HMAC_SHA1);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC-SHA1 is unavailable", e);
+            }
+        }
+    }
+
+    /**
+     * This class is a known hosts entry, with its key decoded and (for hashed entries) its salt and hash decoded.
+     */
+    private static class Entry {
+        private final HostKey hostKey;
+        private final String type;
+        private final byte[] key;
+        private final SecretKeySpec salt;
+        private final byte[] hash;
+
+        /**
+         * Constructor for known hosts entry
+         *
+         * @param hostKey host key
+         * @param key decoded key
+         * @throws IllegalArgumentException if the host hash isn't valid Base64
+         */
+        Entry(HostKey hostKey, byte[] key) {
+            this.hostKey = hostKey;
+            this.type = hostKey.getType();
+            this.key = key;
+            String host = hostKey.getHost();
+            int delim = host.indexOf('|', HASH_MAGIC.length());
+            if (host.startsWith(HASH_MAGIC) && (delim > 0)) {
+                this.salt = new SecretKeySpec(Base64.getDecoder().decode(host.substring(HASH_MAGIC.length(), delim)),
+                        HMAC_SHA1);
+                this.hash = Base64.getDecoder().decode(host.substring(delim + 1));
+            } else {
+                this.salt = null;
+                this.hash = null;
+            }
+        }
+
+        /**
+         * Determine if the hash of this entry matches the specified host name.
+         *
+         * @param mac HMAC-SHA1 instance
+         * @param host host name
+         * @return 'true' if the hash matches; otherwise 'false'
+         */
+        boolean matchesHash(Mac mac, String host) {
+            try {
+                mac.init(salt);
+                return Arrays.equals(hash, mac.doFinal(host.getBytes(StandardCharsets.UTF_8)));
+            } catch (GeneralSecurityException e) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.nordstrom.remote;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class is a thread-safe latency histogram with log-linear buckets, in the manner of <b>HdrHistogram</b>. Each
+ * power-of-two range of values is split into 32 linear sub-buckets, so recorded values are resolved to within about
+ * 3% over the full range of {@code long} values, in fixed memory and without allocation.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Record the specified value.
+     *
+     * @param nanos value in nanoseconds (negative values are recorded as 0)
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(indexOf(value));
+        count.increment();
+        sum.add(value);
+        min.accumulateAndGet(value, Math::min);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Add the values recorded by the specified histogram to this histogram.
+     *
+     * @param other histogram to be added
+     */
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long bucket = other.counts.get(i);
+            if (bucket != 0) counts.addAndGet(i, bucket);
+        }
+        count.add(other.count.sum());
+        sum.add(other.sum.sum());
+        min.accumulateAndGet(other.min.get(), Math::min);
+        max.accumulateAndGet(other.max.get(), Math::max);
+    }
+
+    /**
+     * Get the number of recorded values.
+     *
+     * @return value count
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Get the smallest recorded value.
+     *
+     * @return minimum value in nanoseconds; 0 if no values have been recorded
+     */
+    public long getMin() {
+        return (getCount() == 0) ? 0 : min.get();
+    }
+
+    /**
+     * Get the largest recorded value.
+     *
+     * @return maximum value in nanoseconds; 0 if no values have been recorded
+     */
+    public long getMax() {
+        return (getCount() == 0) ? 0 : max.get();
+    }
+
+    /**
+     * Get the mean of the recorded values.
+     *
+     * @return mean value in nanoseconds; 0 if no values have been recorded
+     */
+    public double getMean() {
+        long n = getCount();
+        return (n == 0) ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Get the value at the specified percentile of the recorded values.
+     *
+     * @param percentile percentile (0 to 100)
+     * @return value in nanoseconds, to within the resolution of its bucket; 0 if no values have been recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long n = getCount();
+        if (n == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(Math.max(midpointOf(i), getMin()), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d min=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms max=%.3fms", getCount(),
+                toMillis(getMin()), toMillis(getValueAtPercentile(50)), toMillis(getValueAtPercentile(90)),
+                toMillis(getValueAtPercentile(99)), toMillis(getMax()));
+    }
+
+    /**
+     * Get the index of the bucket for the specified value.
+     *
+     * @param value non-negative value
+     * @return bucket index
+     */
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Get the midpoint of the range of values represented by the specified bucket.
+     *
+     * @param index bucket index
+     * @return midpoint value
+     */
+    private static long midpointOf(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int shift = index / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowest + ((1L << shift) >>> 1);
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,54 @@
+package com.nordstrom.remote;
+
+import com.nordstrom.remote.SshUtils.ChannelType;
+
+/**
+ * Implementations of this interface receive timings and traffic counts from <b>Remote Session</b> operations.
+ * Install an implementation with {@link RemoteMetrics#setRecorder(MetricsRecorder)}; the built-in
+ * {@link InMemoryMetrics} implementation is installed by the <b>METRICS_ENABLED</b> setting.
+ * <p>
+ * <b>NOTE</b>: Methods of this interface are invoked on the threads that perform the measured operations, including
+ * the JSch session threads. Implementations must be thread-safe and should return quickly.
+ */
+public interface MetricsRecorder {
+
+    /**
+     * Measured phases of remote operations
+     */
+    enum Phase {
+        /** TCP connection to the remote host */
+        CONNECT,
+        /** SSH key exchange and user authentication, which JSch performs as a single step */
+        HANDSHAKE,
+        /** channel open request, including subsystem startup for SFTP channels */
+        CHANNEL_OPEN,
+        /** remote task, from channel open to completion */
+        COMMAND,
+        /** wait for end-of-file and exit status after the caller has consumed channel output */
+        DRAIN,
+        /** channel disconnect and session release */
+        DISCONNECT,
+        /** file transfer via {@link SshUtils#sftp(String, String, TransferOptions) sftp} */
+        TRANSFER
+    }
+
+    /**
+     * Record the duration of the specified phase.
+     *
+     * @param phase measured phase
+     * @param host remote host, as "host:port"
+     * @param channelType channel type; 'null' for session-level phases
+     * @param nanos duration in nanoseconds
+     * @param success 'true' if the phase completed normally; 'false' if it failed
+     */
+    void recordLatency(Phase phase, String host, ChannelType channelType, long nanos, boolean success);
+
+    /**
+     * Record SSH traffic to or from the specified host.
+     *
+     * @param host remote host, as "host:port"
+     * @param bytesIn number of bytes received
+     * @param bytesOut number of bytes sent
+     */
+    void recordBytes(String host, long bytesIn, long bytesOut);
+}
@@ -0,0 +1,118 @@
+package com.nordstrom.remote;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * This class frames a list of commands as a single script for one exec channel, and splits the output of the script
+ * into per-command results.
+ * <p>
+ * Each command runs in its own subshell, with standard input redirected from {@code /dev/null}. Before the command,
+ * a start marker line is written to standard output and standard error. After the command, an end marker line is
+ * written to both streams; on standard output, the end marker carries the exit status of the command. Each end
+ * marker is preceded by a line feed, so it starts a line even if the output of the command doesn't end with one.
+ *
+ * @see SshUtils#execPipelined(SshUtils.SessionHolder, List)
+ */
+final class PipelinedExec {
+
+    private final String marker = "PX" + UUID.randomUUID().toString().replace("-", "");
+    private final List<String> commands;
+
+    /**
+     * Constructor for pipelined exec script
+     *
+     * @param commands commands to be executed, in order
+     */
+    PipelinedExec(List<String> commands) {
+        if (commands.isEmpty()) {
+            throw new IllegalArgumentException("At least one command must be specified");
+        }
+        this.commands = new ArrayList<>(commands);
+    }
+
+    /**
+     * Get the script that executes the commands of this pipeline in the specified directory.
+     *
+     * @param workDir directory in which to execute the commands (may be 'null')
+     * @return framed script
+     */
+    String getScript(String workDir) {
+        StringBuilder script = new StringBuilder();
+        if (workDir != null && !workDir.isEmpty()) {
+            script.append("cd ").append(SshUtils.quote(workDir)).append(" || exit\n");
+        }
+        for (int i = 0; i < commands.size(); i++) {
+            String start = marker + "_" + i + "<";
+            String end = marker + "_" + i + ">";
+            script.append("printf '%s\\n' '").append(start).append("'; printf '%s\\n' '").append(start)
+                    .append("' >&2\n");
+            // the closing parenthesis goes on its own line, so a trailing comment doesn't swallow it
+            script.append("(\n").append(commands.get(i)).append("\n) </dev/null\n");
+            script.append("printf '\\n%s:%d\\n' '").append(end).append("' \"$?\"; printf '\\n%s\\n' '").append(end)
+                    .append("' >&2\n");
+        }
+        return script.toString();
+    }
+
+    /**
+     * Split the output of the script into per-command results.
+     *
+     * @param maskedUri remote task URI (password redacted)
+     * @param stdout standard output of the script
+     * @param stderr standard error of the script
+     * @param failure exception thrown by the script (may be 'null'); held by the results of commands that didn't
+     *     complete
+     * @param startTime start time of the script (epoch milliseconds)
+     * @param connectMillis interval spent establishing the session
+     * @param totalMillis total interval spent on the script, including connection
+     * @return list of per-command results, in order
+     */
+    List<ExecResult> split(String maskedUri, String stdout, String stderr, RuntimeException failure,
+                    long startTime, long connectMillis, long totalMillis) {
+        List<ExecResult> results = new ArrayList<>();
+        int outFrom = 0;
+        int errFrom = 0;
+        for (int i = 0; i < commands.size(); i++) {
+            String start = marker + "_" + i + "<\n";
+            String end = "\n" + marker + "_" + i + ">";
+
+            String output = null;
+            String errorOutput = null;
+            int exitStatus = -1;
+
+            int outStart = stdout.indexOf(start, outFrom);
+            int outEnd = (outStart == -1) ? -1 : stdout.indexOf(end + ":", outStart + start.length());
+            int lineEnd = (outEnd == -1) ? -1 : stdout.indexOf('\n', outEnd + end.length());
+            if (lineEnd != -1) {
+                output = stdout.substring(outStart + start.length(), outEnd);
+                exitStatus = Integer.parseInt(stdout.substring(outEnd + end.length() + 1, lineEnd).trim());
+                outFrom = lineEnd;
+            } else if (outStart != -1) {
+                output = stdout.substring(outStart + start.length());
+            }
+
+            int errStart = stderr.indexOf(start, errFrom);
+            int errEnd = (errStart == -1) ? -1 : stderr.indexOf(end + "\n", errStart + start.length());
+            if (errEnd != -1) {
+                errorOutput = stderr.substring(errStart + start.length(), errEnd);
+                errFrom = errEnd + end.length();
+            } else if (errStart != -1) {
+                errorOutput = stderr.substring(errStart + start.length());
+            }
+
+            RuntimeException exception = null;
+            if (lineEnd == -1) {
+                exception = (failure != null) ? failure
+                        : new RemoteExecutionFailedException(maskedUri, exitStatus, errorOutput);
+            } else if (exitStatus != 0) {
+                exception = new RemoteExecutionFailedException(maskedUri, exitStatus,
+                        (errorOutput != null && !errorOutput.isEmpty()) ? errorOutput : output);
+            }
+            results.add(new ExecResult(maskedUri, output, errorOutput, exitStatus, exception, startTime,
+                    connectMillis, totalMillis));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,133 @@
+package com.nordstrom.remote;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.jcraft.jsch.SftpProgressMonitor;
+
+/**
+ * This class aggregates the progress of an SSH file transfer across its SFTP channels and delivers rate-limited
+ * updates to a {@link TransferListener}. If no listener is specified, tracking is disabled and
+ * {@link #getMonitor()} returns 'null', so JSch transfers run without monitoring.
+ */
+class ProgressTracker {
+
+    private final TransferListener listener;
+    private final long intervalNanos;
+    private final long startNanos = System.nanoTime();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong nextReport;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final SftpProgressMonitor monitor;
+    private volatile long totalBytes;
+    private volatile boolean cancelled;
+    private long lastBytes;
+    private long lastNanos = startNanos;
+
+    /**
+     * Constructor for progress tracker
+     *
+     * @param listener transfer listener; 'null' to disable tracking
+     * @param intervalMillis minimum interval in milliseconds between progress updates
+     */
+    ProgressTracker(TransferListener listener, long intervalMillis) {
+        this.listener = listener;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.nextReport = new AtomicLong(startNanos + intervalNanos);
+        this.monitor = (listener == null) ? null : new SftpProgressMonitor() {
+            @Override
+            public void init(int op, String src, String dest, long max) {
+            }
+
+            @Override
+            public boolean count(long count) {
+                add(count);
+                return !cancelled;
+            }
+
+            @Override
+            public void end() {
+            }
+        };
+    }
+
+    /**
+     * Get the JSch progress monitor that feeds this tracker.
+     *
+     * @return SFTP progress monitor; 'null' if tracking is disabled
+     */
+    SftpProgressMonitor getMonitor() {
+        return monitor;
+    }
+
+    /**
+     * Set the total number of bytes to be transferred.
+     *
+     * @param totalBytes total byte count
+     */
+    void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    /**
+     * Add the specified number of bytes to the transfer progress, delivering an update if the progress interval
+     * has elapsed.
+     *
+     * @param count number of bytes transferred
+     */
+    void add(long count) {
+        if (listener == null) return;
+        bytes.addAndGet(count);
+        long now = System.nanoTime();
+        long next = nextReport.get();
+        // only one thread reports per interval
+        if (now >= next && nextReport.compareAndSet(next, now + intervalNanos)) {
+            report(now, false);
+        }
+    }
+
+    /**
+     * Throw an exception if the listener has cancelled the transfer.
+     *
+     * @throws CancellationException if the transfer has been cancelled
+     */
+    void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException("Transfer cancelled by listener");
+        }
+    }
+
+    /**
+     * Deliver the final update of the transfer.
+     */
+    void complete() {
+        if (listener != null) {
+            report(System.nanoTime(), true);
+        }
+    }
+
+    /**
+     * Deliver a progress update to the listener, recording a cancellation request.
+     *
+     * @param now current value of the system timer in nanoseconds
+     * @param complete 'true' if this is the final update
+     */
+    private void report(long now, boolean complete) {
+        lock.lock();
+        try {
+            long current = bytes.get();
+            double rate = (current - lastBytes) * 1e9 / Math.max(now - lastNanos, 1);
+            lastBytes = current;
+            lastNanos = now;
+            TransferProgress progress = new TransferProgress(current, totalBytes,
+                    TimeUnit.NANOSECONDS.toMillis(now - startNanos), rate, complete);
+            if (!listener.onProgress(progress) && !complete) {
+                cancelled = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package com.nordstrom.remote;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.nordstrom.remote.SshUtils.ChannelStreams;
+
+/**
+ * This class is a streaming matcher that waits on several prompts at once. Channel output is fed to the matcher
+ * as it arrives, and the matcher reports the first prompt that appears, along with its index in the order the
+ * prompts were added.
+ * <ul>
+ *     <li><b>Literal</b> prompts are found anywhere in the output by an Aho-Corasick automaton, which examines each
+ *     character once, regardless of the number of prompts. Partial matches carry over from one chunk to the
+ *     next.</li>
+ *     <li><b>Regex</b> prompts are anchored to the end of the output received so far, which is where a prompt sits
+ *     while the remote host waits for input (e.g. - {@code "[$#] $"}). They are evaluated against a small window at
+ *     the end of the output after each chunk.</li>
+ * </ul>
+ * If a literal prompt and a regex prompt both match within the same chunk, the literal prompt wins, since it appears
+ * earlier in the output. If several literal prompts end at the same character, the one added first wins.
+ *
+ * <pre><code>    PromptMatcher matcher = new PromptMatcher()
+ *            .literal("[sudo] password for")
+ *            .regex("[$#] $")
+ *            .literal("Permission denied");
+ *    PromptMatcher.Match match = channelStream.waitForPrompt(matcher, 5000, null);</code></pre>
+ *
+ * <b>NOTE</b>: A matcher holds the state of a single stream; it isn't thread-safe.
+ *
+ * @see ChannelStreams#waitForPrompt(PromptMatcher, long, java.util.function.Consumer)
+ */
+public class PromptMatcher {
+
+    /** default size in characters of the tail window */
+    public static final int DEFAULT_TAIL_SIZE = 4096;
+    /** default size in characters of the window in which regex prompts must match */
+    public static final int DEFAULT_REGEX_WINDOW = 256;
+
+    private final List<String> prompts = new ArrayList<>();
+    private final List<Pattern> patterns = new ArrayList<>();
+    private int tailSize = DEFAULT_TAIL_SIZE;
+    private int regexWindow = DEFAULT_REGEX_WINDOW;
+    private final StringBuilder tail = new StringBuilder();
+
+    // Aho-Corasick automaton over the literal prompts; built on first use
+    private char[][] keys;
+    private int[][] targets;
+    private int[] failure;
+    private int[] output;
+    private int state;
+
+    /**
+     * Add a literal prompt, which matches wherever it appears in the output.
+     *
+     * @param prompt literal prompt text
+     * @return this {@link PromptMatcher} object
+     */
+    public PromptMatcher literal(String prompt) {
+        if ((prompt == null) || prompt.isEmpty()) {
+            throw new IllegalArgumentException("Literal prompt must be non-empty");
+        }
+        prompts.add(prompt);
+        patterns.add(null);
+        keys = null;
+        return this;
+    }
+
+    /**
+     * Add a regular expression prompt, which matches if the output received so far ends with a match for the
+     * expression.
+     *
+     * @param regex regular expression for the prompt
+     * @return this {@link PromptMatcher} object
+     */
+    public PromptMatcher regex(String regex) {
+        prompts.add(regex);
+        patterns.add(Pattern.compile("(?:" + regex + ")\\z"));
+        return this;
+    }
+
+    /**
+     * Get the number of prompts added to this matcher.
+     *
+     * @return prompt count
+     */
+    public int size() {
+        return prompts.size();
+    }
+
+    /**
+     * Get the prompt with the specified index.
+     *
+     * @param index prompt index, in the order the prompts were added
+     * @return literal prompt text or regular expression
+     */
+    public String getPrompt(int index) {
+        return prompts.get(index);
+    }
+
+    /**
+     * Get the size of the tail window.
+     *
+     * @return tail size in characters
+     */
+    public int getTailSize() {
+        return tailSize;
+    }
+
+    /**
+     * Set the size of the tail window. {@link Match#getTail()} returns at most this many characters.
+     *
+     * @param tailSize tail size in characters
+     * @return this {@link PromptMatcher} object
+     */
+    public PromptMatcher setTailSize(int tailSize) {
+        if (tailSize < 1) {
+            throw new IllegalArgumentException("Tail size must be positive: " + tailSize);
+        }
+        this.tailSize = tailSize;
+        return this;
+    }
+
+    /**
+     * Get the size of the window at the end of the output in which regex prompts must match.
+     *
+     * @return regex window size in characters
+     */
+    public int getRegexWindow() {
+        return regexWindow;
+    }
+
+    /**
+     * Set the size of the window at the end of the output in which regex prompts must match. Regex prompts are
+     * evaluated after each chunk of output, so the cost of waiting grows with this size.
+     *
+     * @param regexWindow regex window size in characters (limited to the tail size)
+     * @return this {@link PromptMatcher} object
+     */
+    public PromptMatcher setRegexWindow(int regexWindow) {
+        if (regexWindow < 1) {
+            throw new IllegalArgumentException("Regex window must be positive: " + regexWindow);
+        }
+        this.regexWindow = regexWindow;
+        return this;
+    }
+
+    /**
+     * Discard the partial matches and the tail window of this matcher, in preparation for a new wait.
+     */
+    public void reset() {
+        state = 0;
+        tail.setLength(0);
+    }
+
+    /**
+     * Feed the specified chunk of output to this matcher.
+     *
+     * @param chunk chunk of output
+     * @return the first prompt match; 'null' if no prompt has matched
+     */
+    public Match feed(CharSequence chunk) {
+        if (prompts.isEmpty()) {
+            throw new IllegalStateException("No prompts have been added");
+        }
+        if (keys == null) {
+            build();
+        }
+
+        int length = chunk.length();
+        for (int i = 0; i < length; i++) {
+            state = next(state, chunk.charAt(i));
+            if (output[state] != -1) {
+                appendTail(chunk, 0, i + 1);
+                int index = output[state];
+                state = 0;
+                return new Match(index, prompts.get(index), prompts.get(index), getTail(), i + 1);
+            }
+        }
+
+        appendTail(chunk, 0, length);
+        for (int index = 0; index < patterns.size(); index++) {
+            Pattern pattern = patterns.get(index);
+            if (pattern != null) {
+                Matcher matcher = pattern.matcher(tail);
+                matcher.region(Math.max(0, tail.length() - Math.min(regexWindow, tailSize)), tail.length());
+                if (matcher.find()) {
+                    state = 0;
+                    return new Match(index, prompts.get(index), matcher.group(), getTail(), length);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the tail window of the output fed to this matcher since it was last reset.
+     *
+     * @return up to {@link #getTailSize()} of the most recent characters
+     */
+    public String getTail() {
+        int start = Math.max(0, tail.length() - tailSize);
+        return tail.substring(start);
+    }
+
+    /**
+     * Append the specified range of a chunk to the tail window, trimming the window when it grows to twice its
+     * size. Trimming in bulk keeps the cost of maintaining the window linear in the size of the output.
+     *
+     * @param chunk chunk of output
+     * @param start start index
+     * @param end end index (exclusive)
+     */
+    private void appendTail(CharSequence chunk, int start, int end) {
+        int from = Math.max(start, end - tailSize);
+        tail.append(chunk, from, end);
+        if (tail.length() > 2 * tailSize) {
+            tail.delete(0, tail.length() - tailSize);
+        }
+    }
+
+    /**
+     * Get the automaton state that follows the specified state on the specified character.
+     *
+     * @param current current state
+     * @param c next character
+     * @return next state
+     */
+    private int next(int current, char c) {
+        int node = current;
+        while (true) {
+            int child = child(node, c);
+            if (child != -1) return child;
+            if (node == 0) return 0;
+            node = failure[node];
+        }
+    }
+
+    /**
+     * Get the child of the specified trie node on the specified character.
+     *
+     * @param node trie node
+     * @param c character
+     * @return child node; -1 if none
+     */
+    private int child(int node, char c) {
+        int i = Arrays.binarySearch(keys[node], c);
+        return (i >= 0) ? targets[node][i] : -1;
+    }
+
+    /**
+     * Build the Aho-Corasick automaton for the literal prompts of this matcher.
+     */
+    private void build() {
+        List<StringBuilder> nodeKeys = new ArrayList<>();
+        List<List<Integer>> nodeTargets = new ArrayList<>();
+        List<Integer> nodeOutput = new ArrayList<>();
+        nodeKeys.add(new StringBuilder());
+        nodeTargets.add(new ArrayList<>());
+        nodeOutput.add(-1);
+
+        // build the trie, recording the first prompt that ends at each node
+        for (int index = 0; index < prompts.size(); index++) {
+            if (patterns.get(index) != null) continue;
+            int node = 0;
+            for (char c : prompts.get(index).toCharArray()) {
+                int i = nodeKeys.get(node).indexOf(String.valueOf(c));
+                if (i == -1) {
+                    nodeKeys.get(node).append(c);
+                    nodeTargets.get(node).add(nodeKeys.size());
+                    node = nodeKeys.size();
+                    nodeKeys.add(new StringBuilder());
+                    nodeTargets.add(new ArrayList<>());
+                    nodeOutput.add(-1);
+                } else {
+                    node = nodeTargets.get(node).get(i);
+                }
+            }
+            if (nodeOutput.get(node) == -1) {
+                nodeOutput.set(node, index);
+            }
+        }
+
+        // sort the children of each node for binary search
+        int count = nodeKeys.size();
+        keys = new char[count][];
+        targets = new int[count][];
+        for (int node = 0; node < count; node++) {
+            char[] nodeChars = nodeKeys.get(node).toString().toCharArray();
+            Integer[] order = new Integer[nodeChars.length];
+            for (int i = 0; i < order.length; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> Character.compare(nodeChars[a], nodeChars[b]));
+            keys[node] = new char[order.length];
+            targets[node] = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                keys[node][i] = nodeChars[order[i]];
+                targets[node][i] = nodeTargets.get(node).get(order[i]);
+            }
+        }
+
+        // compute failure links breadth-first; a node also outputs the prompts of its failure chain, so the output
+        // of a node is the first-added prompt that ends there
+        failure = new int[count];
+        output = new int[count];
+        output[0] = -1;
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int child : targets[0]) {
+            failure[child] = 0;
+            output[child] = nodeOutput.get(child);
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.remove();
+            for (int i = 0; i < keys[node].length; i++) {
+                int child = targets[node][i];
+                failure[child] = next(failure[node], keys[node][i]);
+                output[child] = min(nodeOutput.get(child), output[failure[child]]);
+                queue.add(child);
+            }
+        }
+        state = 0;
+    }
+
+    private static int min(int first, int second) {
+        if (first == -1) return second;
+        if (second == -1) return first;
+        return Math.min(first, second);
+    }
+
+    /**
+     * This class describes a prompt match.
+     */
+    public static class Match {
+        private final int index;
+        private final String prompt;
+        private final String text;
+        private final String tail;
+        private final int end;
+
+        /**
+         * Constructor for prompt match
+         *
+         * @param index prompt index
+         * @param prompt literal prompt text or regular expression
+         * @param text matched text
+         * @param tail tail window, ending with the matched text
+         * @param end offset in the current chunk just past the matched text
+         */
+        Match(int index, String prompt, String text, String tail, int end) {
+            this.index = index;
+            this.prompt = prompt;
+            this.text = text;
+            this.tail = tail;
+            this.end = end;
+        }
+
+        /**
+         * Get the index of the matched prompt, in the order the prompts were added.
+         *
+         * @return prompt index
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Get the matched prompt.
+         *
+         * @return literal prompt text or regular expression
+         */
+        public String getPrompt() {
+            return prompt;
+        }
+
+        /**
+         * Get the text that matched the prompt.
+         *
+         * @return matched text
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * Get the most recent output, ending with the matched text.
+         *
+         * @return up to {@link PromptMatcher#getTailSize()} characters of output
+         */
+        public String getTail() {
+            return tail;
+        }
+
+        /**
+         * Get the offset just past the matched text in the chunk in which the match was found.
+         *
+         * @return end offset of the match
+         */
+        int getEnd() {
+            return end;
+        }
+
+        @Override
+        public String toString() {
+            return "prompt " + index + " (" + prompt + ")";
+        }
+    }
+}
@@ -62,6 +62,8 @@ public class RemoteConfig extends SettingsCore<RemoteConfig.RemoteSettings> {
         TERMINAL_V_RESOLUTION("remote.terminal.v.resolution", Integer.toString(ROWS * CELL_HEIGHT)),
         /** name: <b>remote.completion.check.interval</b> <br> default: <b>100</b> */
         COMPLETION_CHECK_INTERVAL("remote.completion.check.interval", "100"),
+        /** name: <b>remote.completion.timeout</b> <br> default: <b>0</b> */
+        COMPLETION_TIMEOUT("remote.completion.timeout", "0"),
         /** name: <b>remote.disconnect.check.attempts</b> <br> default: <b>600</b> */
         DISCONNECT_CHECK_ATTEMPTS("remote.disconnect.check.attempts", "600"),
         /** name: <b>remote.disconnect.check.interval</b> <br> default: <b>100</b> */
@@ -69,7 +71,63 @@ public class RemoteConfig extends SettingsCore<RemoteConfig.RemoteSettings> {
         /** name: <b>remote.channel.check.interval</b> <br> default: <b>100</b> */
         CHANNEL_CHECK_INTERVAL("remote.channel.check.interval", "100"),
         /** name: <b>remote.channel.buffer.size</b> <br> default: <b>102400</b> */
-        CHANNEL_BUFFER_SIZE("remote.channel.buffer.size", Integer.toString(BUFFER_SIZE));
+        CHANNEL_BUFFER_SIZE("remote.channel.buffer.size", Integer.toString(BUFFER_SIZE)),
+        /** name: <b>remote.session.pool.enabled</b> <br> default: <b>false</b> */
+        SESSION_POOL_ENABLED("remote.session.pool.enabled", "false"),
+        /** name: <b>remote.session.pool.max.idle</b> <br> default: <b>4</b> */
+        SESSION_POOL_MAX_IDLE("remote.session.pool.max.idle", "4"),
+        /** name: <b>remote.session.pool.max.per.host</b> <br> default: <b>8</b> */
+        SESSION_POOL_MAX_PER_HOST("remote.session.pool.max.per.host", "8"),
+        /** name: <b>remote.session.pool.max.total</b> <br> default: <b>256</b> */
+        SESSION_POOL_MAX_TOTAL("remote.session.pool.max.total", "256"),
+        /** name: <b>remote.session.pool.idle.timeout</b> <br> default: <b>60000</b> */
+        SESSION_POOL_IDLE_TIMEOUT("remote.session.pool.idle.timeout", "60000"),
+        /** name: <b>remote.session.pool.wait.timeout</b> <br> default: <b>30000</b> */
+        SESSION_POOL_WAIT_TIMEOUT("remote.session.pool.wait.timeout", "30000"),
+        /** name: <b>remote.max.channels.per.session</b> <br> default: <b>10</b> */
+        MAX_CHANNELS_PER_SESSION("remote.max.channels.per.session", "10"),
+        /** name: <b>remote.stderr.head.size</b> <br> default: <b>8192</b> */
+        STDERR_HEAD_SIZE("remote.stderr.head.size", "8192"),
+        /** name: <b>remote.stderr.tail.size</b> <br> default: <b>8192</b> */
+        STDERR_TAIL_SIZE("remote.stderr.tail.size", "8192"),
+        /** name: <b>remote.fanout.concurrency</b> <br> default: <b>16</b> */
+        FANOUT_CONCURRENCY("remote.fanout.concurrency", "16"),
+        /** name: <b>remote.virtual.threads</b> <br> default: <b>true</b> */
+        VIRTUAL_THREADS("remote.virtual.threads", "true"),
+        /** name: <b>remote.sftp.channels</b> <br> default: <b>4</b> */
+        SFTP_CHANNELS("remote.sftp.channels", "4"),
+        /** name: <b>remote.sftp.preserve</b> <br> default: <b>false</b> */
+        SFTP_PRESERVE("remote.sftp.preserve", "false"),
+        /** name: <b>remote.sftp.segment.size</b> <br> default: <b>33554432</b> */
+        SFTP_SEGMENT_SIZE("remote.sftp.segment.size", "33554432"),
+        /** name: <b>remote.sftp.resume</b> <br> default: <b>false</b> */
+        SFTP_RESUME("remote.sftp.resume", "false"),
+        /** name: <b>remote.sftp.verify</b> <br> default: <b>false</b> */
+        SFTP_VERIFY("remote.sftp.verify", "false"),
+        /** name: <b>remote.sftp.delta</b> <br> default: <b>false</b> */
+        SFTP_DELTA("remote.sftp.delta", "false"),
+        /** name: <b>remote.session.compression</b> <br> default: <b>none</b> */
+        SESSION_COMPRESSION("remote.session.compression", "none"),
+        /** name: <b>remote.compression.level</b> <br> default: <b>6</b> */
+        COMPRESSION_LEVEL("remote.compression.level", "6"),
+        /** name: <b>remote.compression.threshold</b> <br> default: <b>10485760</b> */
+        COMPRESSION_THRESHOLD("remote.compression.threshold", "10485760"),
+        /** name: <b>remote.sftp.progress.interval</b> <br> default: <b>1000</b> */
+        SFTP_PROGRESS_INTERVAL("remote.sftp.progress.interval", "1000"),
+        /** name: <b>remote.metrics.enabled</b> <br> default: <b>false</b> */
+        METRICS_ENABLED("remote.metrics.enabled", "false"),
+        /** name: <b>remote.ssh.algorithm.profile</b> <br> default: <b>default</b> */
+        SSH_ALGORITHM_PROFILE("remote.ssh.algorithm.profile", "default"),
+        /** name: <b>remote.ssh.ciphers</b> <br> default: {@code null} */
+        SSH_CIPHERS("remote.ssh.ciphers", null),
+        /** name: <b>remote.ssh.kex.algorithms</b> <br> default: {@code null} */
+        SSH_KEX_ALGORITHMS("remote.ssh.kex.algorithms", null),
+        /** name: <b>remote.ssh.macs</b> <br> default: {@code null} */
+        SSH_MACS("remote.ssh.macs", null),
+        /** name: <b>remote.ssh.host.key.algorithms</b> <br> default: {@code null} */
+        SSH_HOST_KEY_ALGORITHMS("remote.ssh.host.key.algorithms", null),
+        /** name: <b>remote.tunnel.check.interval</b> <br> default: <b>5000</b> */
+        TUNNEL_CHECK_INTERVAL("remote.tunnel.check.interval", "5000");
         
         private String propertyName;
         private String defaultValue;
@@ -61,6 +61,22 @@ public class RemoteExecutionFailedException extends RuntimeException {
         taskOutput = output;
     }
 
+    /**
+     * Constructor for a new "remote execution failed" exception with
+     * the specified remote task URI, exit status, and task output.
+     * 
+     * @param  maskedUri remote task URI (password redacted).
+     * @param  exitStatus exit status of the remote task.
+     * @param  output output from the remote task (which is saved for later retrieval by the
+     *         {@link #getTaskOutput()} method).
+     */
+    public RemoteExecutionFailedException(String maskedUri, int exitStatus, String output) {
+        super(getMessage(exitStatus, maskedUri, output));
+        this.exitStatus = exitStatus;
+        this.maskedUri = maskedUri;
+        taskOutput = output;
+    }
+
     /**
      * Get the exit status of the failed remote task.
      * 
@@ -99,7 +115,20 @@ public class RemoteExecutionFailedException extends RuntimeException {
      * @return "remote execution failed" exception message
      */
     private static String getMessage(SessionHolder<?> session, String output) {
-        String message = String.format("Exit status %s for %s", session.getExitStatus(), session.getMaskedUri());
+        return getMessage(session.getExitStatus(), session.getMaskedUri(), output);
+    }
+
+    /**
+     * Build a message for this "remote execution failed" exception from
+     * the specified exit status, remote task URI, and task output.
+     * 
+     * @param  exitStatus exit status of the remote task.
+     * @param  maskedUri remote task URI (password redacted).
+     * @param  output output from the remote task.
+     * @return "remote execution failed" exception message
+     */
+    private static String getMessage(int exitStatus, String maskedUri, String output) {
+        String message = String.format("Exit status %s for %s", exitStatus, maskedUri);
         if ((output == null) || output.isEmpty()) {
             return message;
         }
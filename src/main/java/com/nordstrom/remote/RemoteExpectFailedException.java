@@ -0,0 +1,50 @@
+package com.nordstrom.remote;
+
+/**
+ * This exception is thrown when an {@link ExpectScript} fails: a required step timed out, the channel closed, or a
+ * failure branch matched.
+ */
+public class RemoteExpectFailedException extends RuntimeException {
+
+    private static final long serialVersionUID = -3926640741466392718L;
+
+    /** index of the failed step */
+    private final int step;
+    /** results of the script up to and including the failed step */
+    private final transient ExpectScript.Result result;
+
+    /**
+     * Constructor for a new "remote expect failed" exception with
+     * the specified message, step index, and partial result.
+     *
+     * @param  message the detail message (which is saved for later retrieval
+     *         by the {@link #getMessage()} method).
+     * @param  step index of the failed step.
+     * @param  result results of the script up to and including the failed step (which is saved for later
+     *         retrieval by the {@link #getResult()} method).
+     */
+    public RemoteExpectFailedException(String message, int step, ExpectScript.Result result) {
+        super(message);
+        this.step = step;
+        this.result = result;
+    }
+
+    /**
+     * Get the index of the failed step.
+     *
+     * @return index of the failed step in its script
+     */
+    public int getStep() {
+        return step;
+    }
+
+    /**
+     * Get the results of the script up to and including the failed step.
+     *
+     * @return partial script result
+     */
+    public ExpectScript.Result getResult() {
+        return result;
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.nordstrom.remote;
+
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+
+import com.jcraft.jsch.Channel;
+import com.nordstrom.remote.SshUtils.ChannelType;
+import com.nordstrom.remote.SshUtils.SessionHolder;
+
+/**
+ * This class is a {@link CompletableFuture} for a remote task that runs on a dedicated channel. Cancelling the future
+ * disconnects the channel, which stops the remote task and releases the thread that's waiting for it.
+ * <p>
+ * <b>NOTE</b>: As with any {@link CompletableFuture}, cancelling a dependent stage (e.g. - the result of
+ * {@link #thenApply(Function) thenApply}) doesn't cancel this future.
+ *
+ * @param <T> result type of the remote task
+ */
+class RemoteFuture<T> extends CompletableFuture<T> {
+
+    private static final ExecutorService DEFAULT_EXECUTOR = RemoteThreads.newExecutor("remote-session-async");
+
+    private volatile SessionHolder<?> session;
+
+    /**
+     * Get the default executor for remote tasks: virtual threads on Java 21+; otherwise a cached pool of daemon
+     * threads.
+     *
+     * @return default remote task executor
+     */
+    static Executor getDefaultExecutor() {
+        return DEFAULT_EXECUTOR;
+    }
+
+    /**
+     * Run the specified task on a new channel of the specified type, completing the returned future with its result.
+     *
+     * @param <C> channel type wrapped by the session holder
+     * @param <T> result type of the remote task
+     * @param channelType desired channel type
+     * @param uri SSH connection URI
+     * @param task remote task to run with the session holder for the new channel
+     * @param executor executor that runs the remote task
+     * @return future for the result of the remote task
+     */
+    static <C extends Channel, T> RemoteFuture<T> supplyAsync(ChannelType channelType, URI uri,
+            Function<SessionHolder<C>, T> task, Executor executor) {
+        RemoteFuture<T> future = new RemoteFuture<>();
+        executor.execute(() -> future.run(channelType, uri, task));
+        return future;
+    }
+
+    /**
+     * Cancel this future, disconnecting the channel of the remote task if it's been started.
+     *
+     * @param mayInterruptIfRunning ignored; the remote task is stopped by disconnecting its channel
+     * @return 'true' if this future is now cancelled
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled) {
+            disconnect();
+        }
+        return cancelled;
+    }
+
+    /**
+     * Run the specified task on a new channel of the specified type, completing this future with its result.
+     *
+     * @param <C> channel type wrapped by the session holder
+     * @param channelType desired channel type
+     * @param uri SSH connection URI
+     * @param task remote task to run with the session holder for the new channel
+     */
+    private <C extends Channel> void run(ChannelType channelType, URI uri, Function<SessionHolder<C>, T> task) {
+        if (isDone()) return;
+        try (SessionHolder<C> holder = new SessionHolder<>(channelType, uri)) {
+            session = holder;
+            // re-check after publishing the session; a concurrent 'cancel' may have missed it
+            if (isCancelled()) return;
+            complete(task.apply(holder));
+        } catch (Throwable t) {
+            completeExceptionally(t);
+        } finally {
+            session = null;
+        }
+    }
+
+    /**
+     * Disconnect the channel of the remote task (if any).
+     */
+    private void disconnect() {
+        SessionHolder<?> holder = session;
+        if (holder != null) {
+            holder.getChannel().disconnect();
+        }
+    }
+}
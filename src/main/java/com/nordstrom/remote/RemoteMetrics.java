@@ -0,0 +1,185 @@
+package com.nordstrom.remote;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import com.jcraft.jsch.SocketFactory;
+import com.nordstrom.remote.MetricsRecorder.Phase;
+import com.nordstrom.remote.RemoteConfig.RemoteSettings;
+import com.nordstrom.remote.SshUtils.ChannelType;
+
+/**
+ * This class holds the active {@link MetricsRecorder}. If the <b>METRICS_ENABLED</b> setting is 'true', an
+ * {@link InMemoryMetrics} recorder is installed initially; otherwise, metrics are disabled until a recorder is set.
+ * <p>
+ * When metrics are disabled, instrumented operations skip timing entirely, so the only overhead is a volatile read.
+ *
+ * <pre><code>    InMemoryMetrics metrics = new InMemoryMetrics();
+ *    RemoteMetrics.setRecorder(metrics);
+ *    ...
+ *    System.out.println(metrics.getHistogram(Phase.HANDSHAKE, null, null));</code></pre>
+ */
+public final class RemoteMetrics {
+
+    private static volatile MetricsRecorder recorder;
+
+    static {
+        if (RemoteConfig.getConfig().getBoolean(RemoteSettings.METRICS_ENABLED.key())) {
+            recorder = new InMemoryMetrics();
+        }
+    }
+
+    private RemoteMetrics() {
+        throw new AssertionError("RemoteMetrics is a static utility class that cannot be instantiated");
+    }
+
+    /**
+     * Get the active metrics recorder.
+     *
+     * @return active metrics recorder; 'null' if metrics are disabled
+     */
+    public static MetricsRecorder getRecorder() {
+        return recorder;
+    }
+
+    /**
+     * Set the active metrics recorder.
+     *
+     * @param recorder metrics recorder; 'null' to disable metrics
+     */
+    public static void setRecorder(MetricsRecorder recorder) {
+        RemoteMetrics.recorder = recorder;
+    }
+
+    /**
+     * Determine if metrics are enabled.
+     *
+     * @return 'true' if a metrics recorder is active; otherwise 'false'
+     */
+    public static boolean isEnabled() {
+        return recorder != null;
+    }
+
+    /**
+     * Get the start time for a measured phase.
+     *
+     * @return current value of the system timer in nanoseconds; 0 if metrics are disabled
+     */
+    static long start() {
+        return (recorder != null) ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record the duration of the specified phase, which started at the specified time.
+     *
+     * @param phase measured phase
+     * @param host remote host, as "host:port"
+     * @param channelType channel type; 'null' for session-level phases
+     * @param startNanos start time from {@link #start()}; 0 if metrics were disabled
+     * @param success 'true' if the phase completed normally; 'false' if it failed
+     */
+    static void record(Phase phase, String host, ChannelType channelType, long startNanos, boolean success) {
+        MetricsRecorder active = recorder;
+        if ((active != null) && (startNanos != 0)) {
+            active.recordLatency(phase, host, channelType, System.nanoTime() - startNanos, success);
+        }
+    }
+
+    /**
+     * Get a JSch socket factory that measures TCP connection time and counts traffic for the specified host.
+     *
+     * @param host remote host, as "host:port"
+     * @param connectTimeout TCP connection timeout in milliseconds; 0 for no timeout
+     * @return socket factory; 'null' if metrics are disabled
+     */
+    static MeteredSocketFactory getSocketFactory(String host, int connectTimeout) {
+        return (recorder == null) ? null : new MeteredSocketFactory(host, connectTimeout);
+    }
+
+    /**
+     * This class is a JSch socket factory that reports TCP connection time and traffic to the active recorder.
+     */
+    static class MeteredSocketFactory implements SocketFactory {
+        private final String host;
+        private final int connectTimeout;
+        private volatile long connectNanos;
+
+        MeteredSocketFactory(String host, int connectTimeout) {
+            this.host = host;
+            this.connectTimeout = connectTimeout;
+        }
+
+        @Override
+        public Socket createSocket(String hostName, int port) throws IOException {
+            long start = System.nanoTime();
+            Socket socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(hostName, port), connectTimeout);
+            } catch (IOException e) {
+                socket.close();
+                record(Phase.CONNECT, host, null, start, false);
+                throw e;
+            }
+            connectNanos = System.nanoTime() - start;
+            record(Phase.CONNECT, host, null, start, true);
+            return socket;
+        }
+
+        /**
+         * Get the duration of the most recent successful TCP connection.
+         *
+         * @return connection time in nanoseconds; 0 if no connection has been established
+         */
+        long getConnectNanos() {
+            return connectNanos;
+        }
+
+        @Override
+        public InputStream getInputStream(Socket socket) throws IOException {
+            return new FilterInputStream(socket.getInputStream()) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b != -1) count(1, 0);
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int count = super.read(b, off, len);
+                    if (count > 0) count(count, 0);
+                    return count;
+                }
+            };
+        }
+
+        @Override
+        public OutputStream getOutputStream(Socket socket) throws IOException {
+            return new FilterOutputStream(socket.getOutputStream()) {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    count(0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    count(0, len);
+                }
+            };
+        }
+
+        private void count(long bytesIn, long bytesOut) {
+            MetricsRecorder active = recorder;
+            if (active != null) {
+                active.recordBytes(host, bytesIn, bytesOut);
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.nordstrom.remote;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class creates the executors that run blocking remote tasks (async operations, fan-out workers, and stream
+ * drainers).
+ * <p>
+ * <b>NOTE</b>: This is the Java 8 implementation, which always uses platform threads. The multi-release JAR includes
+ * a Java 21 implementation that uses virtual threads unless the <b>VIRTUAL_THREADS</b> setting is 'false'.
+ */
+final class RemoteThreads {
+
+    private RemoteThreads() {
+        throw new AssertionError("RemoteThreads is a static utility class that cannot be instantiated");
+    }
+
+    /**
+     * Determine if remote task executors use virtual threads.
+     *
+     * @return 'true' if virtual threads are used; otherwise 'false'
+     */
+    static boolean isVirtual() {
+        return false;
+    }
+
+    /**
+     * Create an executor that runs each task on its own thread, reusing idle threads when available.
+     *
+     * @param name name prefix for executor threads
+     * @return executor service for remote tasks
+     */
+    static ExecutorService newExecutor(String name) {
+        return newPlatformExecutor(name);
+    }
+
+    /**
+     * Create an executor that runs each task on its own platform daemon thread, reusing idle threads when available.
+     * <p>
+     * <b>NOTE</b>: This executor is for tasks that block in JSch pipe reads, which wait inside a monitor and would
+     * pin the carrier thread of a virtual thread.
+     *
+     * @param name name prefix for executor threads
+     * @return executor service for blocking stream readers
+     */
+    static ExecutorService newPlatformExecutor(String name) {
+        AtomicInteger index = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
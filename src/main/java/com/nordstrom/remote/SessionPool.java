@@ -0,0 +1,606 @@
+package com.nordstrom.remote;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.nordstrom.remote.RemoteConfig.RemoteSettings;
+import com.nordstrom.remote.SshUtils.SessionHolder;
+
+/**
+ * This class maintains a keyed pool of connected SSH sessions. Sessions are keyed on user, host, port, and
+ * credential identity, which enables {@link SessionHolder} objects that target the same account on the same
+ * host to reuse a live {@link Session} instead of performing a full TCP, key exchange, and authentication
+ * handshake for each operation.
+ * <p>
+ * Pooling is activated by the <b>SESSION_POOL_ENABLED</b> setting. When enabled, each new {@link SessionHolder}
+ * leases its session from the pool and opens a new channel on it. Closing the session holder disconnects the
+ * channel and returns the session to the pool, where it remains available for reuse until it has been idle for
+ * longer than the <b>SESSION_POOL_IDLE_TIMEOUT</b> interval.
+ * <p>
+ * The pool enforces these limits:
+ * <ul>
+ *     <li><b>SESSION_POOL_MAX_IDLE</b> - maximum idle sessions retained for each key</li>
+ *     <li><b>SESSION_POOL_MAX_PER_HOST</b> - maximum sessions (leased and idle) for each host/port</li>
+ *     <li><b>SESSION_POOL_MAX_TOTAL</b> - maximum sessions (leased and idle) overall</li>
+ * </ul>
+ * If a lease request would exceed these limits, idle sessions of other keys are discarded to make room. If this
+ * is not sufficient, the request waits up to <b>SESSION_POOL_WAIT_TIMEOUT</b> milliseconds for a session to be
+ * returned.
+ */
+public class SessionPool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SessionPool.class);
+
+    private static final SessionPool sessionPool;
+
+    private final int maxIdle;
+    private final int maxPerHost;
+    private final int maxTotal;
+    private final long idleTimeout;
+    private final long waitTimeout;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+
+    private final Map<SessionKey, Deque<IdleSession>> idleSessions = new HashMap<>();
+    private final Map<Session, SessionKey> leasedSessions = new IdentityHashMap<>();
+    private final Map<String, Integer> hostCounts = new HashMap<>();
+    private int totalCount;
+
+    private long created;
+    private long reused;
+    private long released;
+    private long evicted;
+    private long discarded;
+    private long waitTimeouts;
+
+    private ScheduledExecutorService evictor;
+
+    static {
+        RemoteConfig config = RemoteConfig.getConfig();
+        sessionPool = new SessionPool(
+                config.getInt(RemoteSettings.SESSION_POOL_MAX_IDLE.key()),
+                config.getInt(RemoteSettings.SESSION_POOL_MAX_PER_HOST.key()),
+                config.getInt(RemoteSettings.SESSION_POOL_MAX_TOTAL.key()),
+                config.getLong(RemoteSettings.SESSION_POOL_IDLE_TIMEOUT.key()),
+                config.getLong(RemoteSettings.SESSION_POOL_WAIT_TIMEOUT.key()));
+    }
+
+    /**
+     * Constructor for SSH session pool
+     *
+     * @param maxIdle maximum idle sessions retained for each key
+     * @param maxPerHost maximum sessions (leased and idle) for each host/port
+     * @param maxTotal maximum sessions (leased and idle) overall
+     * @param idleTimeout interval in milliseconds after which idle sessions are evicted
+     * @param waitTimeout maximum interval in milliseconds to wait for a session when limits are reached
+     */
+    public SessionPool(int maxIdle, int maxPerHost, int maxTotal, long idleTimeout, long waitTimeout) {
+        this.maxIdle = maxIdle;
+        this.maxPerHost = maxPerHost;
+        this.maxTotal = maxTotal;
+        this.idleTimeout = idleTimeout;
+        this.waitTimeout = waitTimeout;
+    }
+
+    /**
+     * Get the shared session pool.
+     *
+     * @return shared {@link SessionPool} object
+     */
+    public static SessionPool getPool() {
+        return sessionPool;
+    }
+
+    /**
+     * Determine if session pooling is enabled.
+     *
+     * @return 'true' if the <b>SESSION_POOL_ENABLED</b> setting is 'true'; otherwise 'false'
+     */
+    public static boolean isEnabled() {
+        return RemoteConfig.getConfig().getBoolean(RemoteSettings.SESSION_POOL_ENABLED.key());
+    }
+
+    /**
+     * Lease a connected session for the specified key.
+     * <p>
+     * <b>NOTE</b>: If an idle session is available for the specified key, this is returned. Otherwise, a new session
+     * is created with the specified factory, subject to the limits of this pool.
+     *
+     * @param key session key
+     * @param factory factory that creates and connects a new session
+     * @return connected SSH session
+     * @throws RemoteSessionInstantiationException if no session became available within the wait timeout
+     */
+    public Session lease(SessionKey key, Supplier<Session> factory) {
+        List<Session> toDisconnect = new ArrayList<>();
+        lock.lock();
+        try {
+            long nanos = TimeUnit.MILLISECONDS.toNanos(waitTimeout);
+            while (true) {
+                Deque<IdleSession> idle = idleSessions.get(key);
+                while ((idle != null) && !idle.isEmpty()) {
+                    Session session = idle.pollFirst().session;
+                    if (session.isConnected()) {
+                        leasedSessions.put(session, key);
+                        reused++;
+                        return session;
+                    }
+                    removeSession(key);
+                    toDisconnect.add(session);
+                    discarded++;
+                }
+
+                if (reserve(key, toDisconnect)) {
+                    break;
+                }
+
+                if (nanos <= 0L) {
+                    waitTimeouts++;
+                    throw new RemoteSessionInstantiationException("Session pool exhausted for " + key,
+                            new JSchException("Timed out waiting for pooled session"));
+                }
+                nanos = available.awaitNanos(nanos);
+            }
+            startEvictor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteSessionInstantiationException("Interrupted waiting for session to " + key,
+                    new JSchException("Interrupted", e));
+        } finally {
+            lock.unlock();
+            disconnectAll(toDisconnect);
+        }
+
+        Session session = null;
+        try {
+            session = factory.get();
+            return session;
+        } finally {
+            lock.lock();
+            try {
+                if (session != null) {
+                    leasedSessions.put(session, key);
+                    created++;
+                } else {
+                    removeSession(key);
+                    available.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Return the specified session to this pool.
+     * <p>
+     * <b>NOTE</b>: Sessions that are no longer connected or that would exceed the idle limit for their key are
+     * disconnected and discarded. Sessions that were not leased from this pool are simply disconnected.
+     *
+     * @param session SSH session previously leased from this pool
+     */
+    public void release(Session session) {
+        boolean disconnect = false;
+        lock.lock();
+        try {
+            SessionKey key = leasedSessions.remove(session);
+            if (key == null) {
+                disconnect = true;
+            } else {
+                released++;
+                Deque<IdleSession> idle = idleSessions.computeIfAbsent(key, k -> new ArrayDeque<>());
+                if (session.isConnected() && (idle.size() < maxIdle)) {
+                    idle.offerFirst(new IdleSession(session));
+                } else {
+                    removeSession(key);
+                    discarded++;
+                    disconnect = true;
+                }
+                available.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (disconnect) {
+            session.disconnect();
+        }
+    }
+
+    /**
+     * Discard the specified session, disconnecting it instead of returning it to the pool.
+     *
+     * @param session SSH session previously leased from this pool
+     */
+    public void invalidate(Session session) {
+        lock.lock();
+        try {
+            SessionKey key = leasedSessions.remove(session);
+            if (key != null) {
+                removeSession(key);
+                discarded++;
+                available.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+        session.disconnect();
+    }
+
+    /**
+     * Disconnect idle sessions that have exceeded the idle timeout.
+     *
+     * @return number of sessions evicted
+     */
+    public int evictIdle() {
+        List<Session> toDisconnect = new ArrayList<>();
+        long cutoff = System.currentTimeMillis() - idleTimeout;
+        lock.lock();
+        try {
+            for (Map.Entry<SessionKey, Deque<IdleSession>> entry : idleSessions.entrySet()) {
+                Iterator<IdleSession> iterator = entry.getValue().descendingIterator();
+                while (iterator.hasNext()) {
+                    IdleSession idle = iterator.next();
+                    if ((idle.idleSince < cutoff) || !idle.session.isConnected()) {
+                        iterator.remove();
+                        removeSession(entry.getKey());
+                        toDisconnect.add(idle.session);
+                        evicted++;
+                    }
+                }
+            }
+            idleSessions.values().removeIf(Deque::isEmpty);
+            if (!toDisconnect.isEmpty()) {
+                available.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+        disconnectAll(toDisconnect);
+        return toDisconnect.size();
+    }
+
+    /**
+     * Disconnect all idle sessions in this pool.
+     * <p>
+     * <b>NOTE</b>: Leased sessions are unaffected. These will be pooled or discarded when they are released.
+     */
+    public void clear() {
+        List<Session> toDisconnect = new ArrayList<>();
+        lock.lock();
+        try {
+            for (Map.Entry<SessionKey, Deque<IdleSession>> entry : idleSessions.entrySet()) {
+                for (IdleSession idle : entry.getValue()) {
+                    removeSession(entry.getKey());
+                    toDisconnect.add(idle.session);
+                }
+            }
+            idleSessions.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        disconnectAll(toDisconnect);
+    }
+
+    /**
+     * Get a snapshot of the statistics for this pool.
+     *
+     * @return {@link Stats} object
+     */
+    public Stats getStats() {
+        lock.lock();
+        try {
+            int idle = 0;
+            for (Deque<IdleSession> deque : idleSessions.values()) {
+                idle += deque.size();
+            }
+            return new Stats(created, reused, released, evicted, discarded, waitTimeouts,
+                    leasedSessions.size(), idle, new TreeMap<>(hostCounts));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reserve a slot for a new session with the specified key, discarding idle sessions of other keys if needed.
+     * <p>
+     * <b>NOTE</b>: This method must be called with the pool lock held.
+     *
+     * @param key session key
+     * @param toDisconnect list to which discarded sessions are added
+     * @return 'true' if a slot was reserved; otherwise 'false'
+     */
+    private boolean reserve(SessionKey key, List<Session> toDisconnect) {
+        String hostKey = key.getHostKey();
+        while (hostCounts.getOrDefault(hostKey, 0) >= maxPerHost) {
+            if (!discardOldestIdle(hostKey, toDisconnect)) return false;
+        }
+        while (totalCount >= maxTotal) {
+            if (!discardOldestIdle(null, toDisconnect)) return false;
+        }
+        hostCounts.merge(hostKey, 1, Integer::sum);
+        totalCount++;
+        return true;
+    }
+
+    /**
+     * Discard the least-recently used idle session, optionally restricted to the specified host.
+     * <p>
+     * <b>NOTE</b>: This method must be called with the pool lock held.
+     *
+     * @param hostKey host/port key (may be 'null')
+     * @param toDisconnect list to which the discarded session is added
+     * @return 'true' if an idle session was discarded; otherwise 'false'
+     */
+    private boolean discardOldestIdle(String hostKey, List<Session> toDisconnect) {
+        SessionKey oldestKey = null;
+        IdleSession oldest = null;
+        for (Map.Entry<SessionKey, Deque<IdleSession>> entry : idleSessions.entrySet()) {
+            if ((hostKey == null) || hostKey.equals(entry.getKey().getHostKey())) {
+                IdleSession candidate = entry.getValue().peekLast();
+                if ((candidate != null) && ((oldest == null) || (candidate.idleSince < oldest.idleSince))) {
+                    oldestKey = entry.getKey();
+                    oldest = candidate;
+                }
+            }
+        }
+        if (oldest == null) return false;
+        idleSessions.get(oldestKey).pollLast();
+        removeSession(oldestKey);
+        toDisconnect.add(oldest.session);
+        discarded++;
+        return true;
+    }
+
+    /**
+     * Update session counts to reflect the removal of a session with the specified key.
+     * <p>
+     * <b>NOTE</b>: This method must be called with the pool lock held.
+     *
+     * @param key session key
+     */
+    private void removeSession(SessionKey key) {
+        hostCounts.computeIfPresent(key.getHostKey(), (k, v) -> (v > 1) ? v - 1 : null);
+        totalCount--;
+    }
+
+    /**
+     * Start the idle session evictor for this pool if it isn't already running.
+     * <p>
+     * <b>NOTE</b>: This method must be called with the pool lock held.
+     */
+    private void startEvictor() {
+        if ((evictor == null) && (idleTimeout > 0)) {
+            long interval = Math.max(idleTimeout / 2, 1000L);
+            evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "remote-session-pool-evictor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            evictor.scheduleWithFixedDelay(() -> {
+                try {
+                    evictIdle();
+                } catch (RuntimeException e) {
+                    LOG.warn("Failed evicting idle sessions", e);
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Disconnect the specified sessions.
+     *
+     * @param sessions list of sessions to disconnect
+     */
+    private static void disconnectAll(List<Session> sessions) {
+        for (Session session : sessions) {
+            session.disconnect();
+        }
+    }
+
+    /**
+     * This class wraps idle sessions with the time at which they were returned to the pool.
+     */
+    private static class IdleSession {
+        private final Session session;
+        private final long idleSince;
+
+        IdleSession(Session session) {
+            this.session = session;
+            this.idleSince = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * This class identifies interchangeable sessions by user, host, port, and credential identity.
+     * <p>
+     * <b>NOTE</b>: The string representation of this key omits credentials.
+     */
+    public static final class SessionKey {
+        private final String user;
+        private final String host;
+        private final int port;
+        private final Object[] credentials;
+
+        /**
+         * Constructor for session key
+         *
+         * @param user remote account user name
+         * @param host remote host name
+         * @param port remote SSH port
+         * @param credentials objects that identify the credentials and configuration of the session
+         */
+        public SessionKey(String user, String host, int port, Object... credentials) {
+            this.user = user;
+            this.host = host;
+            this.port = port;
+            this.credentials = credentials;
+        }
+
+        /**
+         * Get the host/port component of this key.
+         *
+         * @return host/port string (e.g. - "{@code host:22}")
+         */
+        public String getHostKey() {
+            return host + ":" + port;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof SessionKey)) return false;
+            SessionKey that = (SessionKey) obj;
+            return (port == that.port) && Objects.equals(user, that.user) && Objects.equals(host, that.host)
+                    && Arrays.deepEquals(credentials, that.credentials);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(user, host, port, Arrays.deepHashCode(credentials));
+        }
+
+        @Override
+        public String toString() {
+            return user + "@" + host + ":" + port;
+        }
+    }
+
+    /**
+     * This class is an immutable snapshot of the statistics of a session pool.
+     */
+    public static final class Stats {
+        private final long created;
+        private final long reused;
+        private final long released;
+        private final long evicted;
+        private final long discarded;
+        private final long waitTimeouts;
+        private final int leased;
+        private final int idle;
+        private final Map<String, Integer> perHost;
+
+        Stats(long created, long reused, long released, long evicted, long discarded, long waitTimeouts,
+                int leased, int idle, Map<String, Integer> perHost) {
+            this.created = created;
+            this.reused = reused;
+            this.released = released;
+            this.evicted = evicted;
+            this.discarded = discarded;
+            this.waitTimeouts = waitTimeouts;
+            this.leased = leased;
+            this.idle = idle;
+            this.perHost = perHost;
+        }
+
+        /**
+         * Get the number of sessions created by the pool.
+         *
+         * @return count of new sessions
+         */
+        public long getCreated() {
+            return created;
+        }
+
+        /**
+         * Get the number of leases satisfied by reusing an idle session.
+         *
+         * @return count of reused sessions
+         */
+        public long getReused() {
+            return reused;
+        }
+
+        /**
+         * Get the number of sessions returned to the pool.
+         *
+         * @return count of released sessions
+         */
+        public long getReleased() {
+            return released;
+        }
+
+        /**
+         * Get the number of idle sessions evicted after exceeding the idle timeout.
+         *
+         * @return count of evicted sessions
+         */
+        public long getEvicted() {
+            return evicted;
+        }
+
+        /**
+         * Get the number of sessions discarded because they were broken, invalidated, or exceeded pool limits.
+         *
+         * @return count of discarded sessions
+         */
+        public long getDiscarded() {
+            return discarded;
+        }
+
+        /**
+         * Get the number of lease requests that timed out waiting for a session.
+         *
+         * @return count of lease timeouts
+         */
+        public long getWaitTimeouts() {
+            return waitTimeouts;
+        }
+
+        /**
+         * Get the number of sessions currently leased.
+         *
+         * @return count of leased sessions
+         */
+        public int getLeased() {
+            return leased;
+        }
+
+        /**
+         * Get the number of sessions currently idle in the pool.
+         *
+         * @return count of idle sessions
+         */
+        public int getIdle() {
+            return idle;
+        }
+
+        /**
+         * Get the number of sessions (leased and idle) for each host/port.
+         *
+         * @return map of host/port to session count
+         */
+        public Map<String, Integer> getPerHost() {
+            return perHost;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("created=%d, reused=%d, released=%d, evicted=%d, discarded=%d, "
+                    + "waitTimeouts=%d, leased=%d, idle=%d, perHost=%s", created, reused, released,
+                    evicted, discarded, waitTimeouts, leased, idle, perHost);
+        }
+    }
+}
@@ -0,0 +1,898 @@
+package com.nordstrom.remote;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.ChannelSftp.LsEntry;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.SftpATTRS;
+import com.jcraft.jsch.SftpException;
+import com.nordstrom.remote.SshUtils.ChannelType;
+import com.nordstrom.remote.SshUtils.SessionHolder;
+
+/**
+ * This class transfers files and directory trees between the local file system and a remote host, spreading the
+ * files of a directory tree across several SFTP channels of a shared session. Large remote files are downloaded as
+ * concurrent byte ranges written directly to their positions in the local file. It implements
+ * {@link SshUtils#sftp(String, String, TransferOptions) sftp}.
+ */
+class SftpTransfer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SftpTransfer.class);
+    private static final PosixFilePermission[] PERMISSIONS = PosixFilePermission.values();
+    private static final int SEGMENT_BUFFER_SIZE = 65536;
+
+    private final RemoteHost host;
+    private final TransferOptions options;
+    private final AtomicLong fileCount = new AtomicLong();
+    private final AtomicLong byteCount = new AtomicLong();
+    private final long startNanos = System.nanoTime();
+    private final ProgressTracker progress;
+    private final Set<SessionHolder<ChannelSftp>> channels = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled;
+
+    /**
+     * This interface defines a transfer of a single item over the specified SFTP channel.
+     *
+     * @param <T> transfer item type
+     */
+    @FunctionalInterface
+    private interface FileTask<T> {
+
+        /**
+         * Transfer the specified item over the specified channel.
+         *
+         * @param channel connected SFTP channel
+         * @param item item to be transferred
+         * @throws SftpException if an SFTP error occurs
+         * @throws IOException if an I/O error occurs
+         */
+        void transfer(ChannelSftp channel, T item) throws SftpException, IOException;
+    }
+
+    /**
+     * This class pairs a remote path with its local counterpart and remote attributes.
+     */
+    private static class RemoteFile {
+        private final String remote;
+        private final Path local;
+        private final SftpATTRS attrs;
+
+        RemoteFile(String remote, Path local, SftpATTRS attrs) {
+            this.remote = remote;
+            this.local = local;
+            this.attrs = attrs;
+        }
+    }
+
+    /**
+     * This class specifies a byte range of a remote file for segmented download.
+     */
+    private static class Segment {
+        private final long offset;
+        private final long length;
+
+        Segment(long offset, long length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Constructor for SFTP transfer
+     *
+     * @param host remote host handle that provides SFTP channels
+     * @param options file transfer options
+     */
+    SftpTransfer(RemoteHost host, TransferOptions options) {
+        this.host = host;
+        this.options = options;
+        this.progress = new ProgressTracker(options.getListener(), options.getProgressInterval());
+    }
+
+    /**
+     * Upload the specified local file or directory tree into the specified remote directory.
+     *
+     * @param source local file or directory
+     * @param remoteDir remote target directory; 'null' or empty for the home directory
+     * @return result of the transfer
+     * @throws Exception if the transfer fails
+     */
+    TransferResult upload(Path source, String remoteDir) throws Exception {
+        List<Path> dirs = new ArrayList<>();
+        List<Path> files = new ArrayList<>();
+        String targetRoot;
+
+        try (SessionHolder<ChannelSftp> control = openChannel()) {
+            ChannelSftp channel = control.getChannel();
+            if (remoteDir != null && !remoteDir.isEmpty()) {
+                channel.cd(remoteDir);
+            }
+            targetRoot = join(channel.pwd(), source.getFileName().toString());
+
+            if (!Files.isDirectory(source)) {
+                progress.setTotalBytes(Files.size(source));
+                uploadFile(channel, source, targetRoot);
+                return getResult();
+            }
+
+            long totalBytes = 0;
+            try (Stream<Path> tree = Files.walk(source)) {
+                tree.forEach(path -> (Files.isDirectory(path) ? dirs : files).add(path));
+            }
+            for (Path file : files) {
+                totalBytes += Files.size(file);
+            }
+            progress.setTotalBytes(totalBytes);
+            // directories are walked in pre-order, so parents are created first
+            for (Path dir : dirs) {
+                mkdir(channel, remotePath(targetRoot, source, dir));
+            }
+        }
+
+        transferAll(files, (channel, file) -> uploadFile(channel, file, remotePath(targetRoot, source, file)));
+
+        if (options.isPreserve()) {
+            // adding files updates directory modification times, so directories are done last (deepest first)
+            try (SessionHolder<ChannelSftp> control = openChannel()) {
+                for (int i = dirs.size() - 1; i >= 0; i--) {
+                    Path dir = dirs.get(i);
+                    setRemoteAttributes(control.getChannel(), dir, remotePath(targetRoot, source, dir));
+                }
+            }
+        }
+        return getResult();
+    }
+
+    /**
+     * Download the specified remote file or directory tree into the specified local directory.
+     *
+     * @param remotePath remote file or directory
+     * @param localDir local target directory
+     * @return result of the transfer
+     * @throws Exception if the transfer fails
+     */
+    TransferResult download(String remotePath, Path localDir) throws Exception {
+        List<RemoteFile> dirs = new ArrayList<>();
+        List<RemoteFile> files = new ArrayList<>();
+        String source = trimTrailingSlash(remotePath);
+        RemoteFile segmentedFile = null;
+
+        try (SessionHolder<ChannelSftp> control = openChannel()) {
+            ChannelSftp channel = control.getChannel();
+            SftpATTRS attrs = channel.stat(source);
+            String name = source.substring(source.lastIndexOf('/') + 1);
+            Path target = name.isEmpty() ? localDir : localDir.resolve(name);
+
+            if (!attrs.isDir()) {
+                progress.setTotalBytes(attrs.getSize());
+                RemoteFile file = new RemoteFile(source, target, attrs);
+                if (!isSegmented(file)) {
+                    downloadFile(channel, file);
+                    return getResult();
+                }
+                segmentedFile = file;
+            } else {
+                list(channel, new RemoteFile(source, target, attrs), dirs, files);
+            }
+        }
+
+        // segments are fanned out after the control channel is closed, so each gets a channel permit
+        if (segmentedFile != null) {
+            downloadSegmented(segmentedFile);
+            return getResult();
+        }
+        progress.setTotalBytes(files.stream().mapToLong(file -> file.attrs.getSize()).sum());
+
+        // large files are split into byte ranges after the others are done, so each gets every channel
+        List<RemoteFile> segmented = new ArrayList<>();
+        files.removeIf(file -> isSegmented(file) && segmented.add(file));
+        transferAll(files, this::downloadFile);
+        for (RemoteFile file : segmented) {
+            downloadSegmented(file);
+        }
+
+        if (options.isPreserve()) {
+            // adding files updates directory modification times, so directories are done last (deepest first)
+            for (int i = dirs.size() - 1; i >= 0; i--) {
+                setLocalAttributes(dirs.get(i).local, dirs.get(i).attrs);
+            }
+        }
+        return getResult();
+    }
+
+    /**
+     * Recursively list the specified remote directory, creating local counterparts of its subdirectories.
+     * <p>
+     * <b>NOTE</b>: Symbolic links to files are followed; symbolic links to directories are skipped to avoid cycles.
+     *
+     * @param channel connected SFTP channel
+     * @param dir remote directory to be listed
+     * @param dirs list that receives remote directories (in pre-order)
+     * @param files list that receives remote files
+     * @throws SftpException if an SFTP error occurs
+     * @throws IOException if a local directory cannot be created
+     */
+    private static void list(ChannelSftp channel, RemoteFile dir, List<RemoteFile> dirs, List<RemoteFile> files)
+            throws SftpException, IOException {
+        Files.createDirectories(dir.local);
+        dirs.add(dir);
+        for (LsEntry entry : channel.ls(dir.remote)) {
+            String name = entry.getFilename();
+            if (".".equals(name) || "..".equals(name)) continue;
+
+            String remote = join(dir.remote, name);
+            SftpATTRS attrs = entry.getAttrs();
+            if (attrs.isLink()) {
+                try {
+                    attrs = channel.stat(remote);
+                } catch (SftpException e) {
+                    // dangling link
+                    continue;
+                }
+                if (attrs.isDir()) continue;
+            }
+
+            RemoteFile child = new RemoteFile(remote, dir.local.resolve(name), attrs);
+            if (attrs.isDir()) {
+                list(channel, child, dirs, files);
+            } else {
+                files.add(child);
+            }
+        }
+    }
+
+    /**
+     * Transfer the specified items, spreading them across the configured number of SFTP channels.
+     *
+     * @param <T> transfer item type
+     * @param items items to be transferred
+     * @param task transfer task for a single item
+     * @throws Exception if any transfer fails
+     */
+    private <T> void transferAll(List<T> items, FileTask<T> task) throws Exception {
+        int workers = Math.min(options.getChannels(), items.size());
+        if (workers == 0) return;
+
+        Queue<T> queue = new ConcurrentLinkedQueue<>(items);
+        AtomicBoolean failed = new AtomicBoolean();
+        ExecutorService executor = RemoteThreads.newExecutor("remote-session-sftp");
+        List<Future<Void>> results = new ArrayList<>(workers);
+        try {
+            for (int i = 0; i < workers; i++) {
+                results.add(executor.submit(() -> {
+                    try (SessionHolder<ChannelSftp> holder = openChannel()) {
+                        T item;
+                        while (!failed.get() && ((item = queue.poll()) != null)) {
+                            task.transfer(holder.getChannel(), item);
+                        }
+                    } catch (Exception e) {
+                        // stop the other workers
+                        failed.set(true);
+                        throw e;
+                    }
+                    return null;
+                }));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Exception failure = null;
+        for (Future<Void> result : results) {
+            try {
+                result.get();
+            } catch (ExecutionException e) {
+                Exception cause = (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+                if (failure == null) {
+                    failure = cause;
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Upload the specified local file to the specified remote path.
+     * <p>
+     * If resumable transfers are enabled and the remote file is no longer than the local file and wasn't modified
+     * before it, only the bytes beyond the end of the remote file are sent. If verification is enabled and the
+     * checksums of a resumed upload don't match, the remote file is replaced in full and verified again.
+     *
+     * @param channel connected SFTP channel
+     * @param file local file
+     * @param remotePath remote target path
+     * @throws SftpException if an SFTP error occurs
+     * @throws IOException if an I/O error occurs or the checksums don't match
+     */
+    private void uploadFile(ChannelSftp channel, Path file, String remotePath) throws SftpException, IOException {
+        long size = Files.size(file);
+        if (options.isDelta() && uploadDelta(channel, file, remotePath)) {
+            fileCount.incrementAndGet();
+            if (options.isPreserve()) {
+                setRemoteAttributes(channel, file, remotePath);
+            }
+            return;
+        }
+        long offset = options.isResume() ? getResumeOffset(getRemoteAttrs(channel, remotePath), size,
+                Files.getLastModifiedTime(file).to(TimeUnit.SECONDS)) : 0;
+        String checksum = put(channel, file, remotePath, offset, size);
+        if (options.isVerify() && !isChecksumMatch(channel, checksum, remotePath)) {
+            if (offset == 0) {
+                throw new IOException("Checksum mismatch after upload: " + remotePath);
+            }
+            // the existing remote content isn't a prefix of the local file
+            checksum = put(channel, file, remotePath, 0, size);
+            if (!isChecksumMatch(channel, checksum, remotePath)) {
+                throw new IOException("Checksum mismatch after upload: " + remotePath);
+            }
+        }
+        fileCount.incrementAndGet();
+        if (options.isPreserve()) {
+            setRemoteAttributes(channel, file, remotePath);
+        }
+    }
+
+    /**
+     * Upload the specified local file as a delta against the existing remote file. The block signatures of the
+     * remote file are computed on the host, the local file is encoded as copy instructions and literal data, and
+     * the delta is uploaded beside the remote file and applied on the host. The checksum of the rebuilt file is
+     * compared with that of the local file.
+     *
+     * @param channel connected SFTP channel
+     * @param file local file
+     * @param remotePath remote target path
+     * @return 'true' if the remote file was rebuilt from the delta; 'false' if it must be uploaded in full
+     * @throws SftpException if an SFTP error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    private boolean uploadDelta(ChannelSftp channel, Path file, String remotePath) throws SftpException, IOException {
+        SftpATTRS attrs = getRemoteAttrs(channel, remotePath);
+        long remoteSize = (attrs != null) ? attrs.getSize() : 0;
+        int blockSize = DeltaEncoder.getBlockSize(remoteSize);
+        if (remoteSize < blockSize) return false;
+
+        String target = SshUtils.quote(getExecPath(channel, remotePath));
+        String deltaPath = remotePath + ".delta";
+        String expect;
+        String actual;
+        DeltaEncoder encoder;
+        try {
+            encoder = new DeltaEncoder(blockSize, exec("python3 -c " + SshUtils.quote(DeltaEncoder.SIGNATURE_SCRIPT)
+                    + " " + target + " " + blockSize));
+            try (InputStream in = Files.newInputStream(file); OutputStream out = channel.put(deltaPath)) {
+                expect = encoder.encode(in, out);
+            }
+            actual = exec("python3 -c " + SshUtils.quote(DeltaEncoder.PATCH_SCRIPT) + " " + target + " "
+                    + SshUtils.quote(getExecPath(channel, deltaPath)) + " " + blockSize).trim();
+        } catch (RemoteExecutionFailedException e) {
+            LOG.warn("Delta upload unavailable for {}; sending in full", remotePath, e);
+            return false;
+        }
+        byteCount.addAndGet(encoder.getDeltaSize());
+        if (!expect.equalsIgnoreCase(actual)) {
+            LOG.warn("Checksum mismatch after delta upload of {}; sending in full", remotePath);
+            return false;
+        }
+        progress.add(Files.size(file));
+        return true;
+    }
+
+    /**
+     * Send the specified local file from the specified offset to the specified remote path. The SHA-256 checksum
+     * of the local file is computed from the stream as it's sent.
+     *
+     * @param channel connected SFTP channel
+     * @param file local file
+     * @param remotePath remote target path
+     * @param offset offset at which to resume; '0' to replace the remote file
+     * @param size size of the local file
+     * @return checksum of the local file as a lower-case hexadecimal string
+     * @throws SftpException if an SFTP error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    private String put(ChannelSftp channel, Path file, String remotePath, long offset, long size)
+            throws SftpException, IOException {
+        MessageDigest digest = newDigest();
+        progress.add(offset);
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            // the prefix is read through the digest here; in APPEND mode, JSch writes from the end of the remote file
+            readFully(in, offset);
+            channel.put(in, remotePath, progress.getMonitor(),
+                    (offset > 0) ? ChannelSftp.APPEND : ChannelSftp.OVERWRITE);
+        }
+        // a cancelling monitor stops the transfer without an exception
+        progress.checkCancelled();
+        byteCount.addAndGet(size - offset);
+        return DeltaEncoder.toHex(digest.digest());
+    }
+
+    /**
+     * Download the specified remote file to its local counterpart.
+     * <p>
+     * If resumable transfers are enabled and the local file is no longer than the remote file and wasn't modified
+     * before it, only the bytes beyond the end of the local file are fetched. If verification is enabled and the
+     * checksums of a resumed download don't match, the local file is replaced in full and verified again.
+     *
+     * @param channel connected SFTP channel
+     * @param file remote file with local counterpart
+     * @throws SftpException if an SFTP error occurs
+     * @throws IOException if an I/O error occurs or the checksums don't match
+     */
+    private void downloadFile(ChannelSftp channel, RemoteFile file) throws SftpException, IOException {
+        long offset = 0;
+        if (options.isResume() && Files.exists(file.local)) {
+            offset = getResumeOffset(Files.size(file.local), Files.getLastModifiedTime(file.local).to(TimeUnit.SECONDS),
+                    file.attrs.getSize(), file.attrs.getMTime() & 0xFFFFFFFFL);
+        }
+        String checksum = get(channel, file, offset);
+        if (options.isVerify() && !isChecksumMatch(channel, checksum, file.remote)) {
+            if (offset == 0) {
+                throw new IOException("Checksum mismatch after download: " + file.remote);
+            }
+            // the existing local content isn't a prefix of the remote file
+            checksum = get(channel, file, 0);
+            if (!isChecksumMatch(channel, checksum, file.remote)) {
+                throw new IOException("Checksum mismatch after download: " + file.remote);
+            }
+        }
+        fileCount.incrementAndGet();
+        if (options.isPreserve()) {
+            setLocalAttributes(file.local, file.attrs);
+        }
+    }
+
+    /**
+     * Fetch the specified remote file from the specified offset to its local counterpart. The SHA-256 checksum of
+     * the local file is computed from the stream as it's written.
+     *
+     * @param channel connected SFTP channel
+     * @param file remote file with local counterpart
+     * @param offset offset at which to resume; '0' to replace the local file
+     * @return checksum of the local file as a lower-case hexadecimal string
+     * @throws SftpException if an SFTP error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    private String get(ChannelSftp channel, RemoteFile file, long offset) throws SftpException, IOException {
+        MessageDigest digest = newDigest();
+        if (offset > 0) {
+            // the existing prefix isn't fetched, so it's read through the digest here
+            try (InputStream in = new DigestInputStream(Files.newInputStream(file.local), digest)) {
+                readFully(in, offset);
+            }
+        }
+        // in RESUME mode, JSch reports the skipped bytes to the progress monitor
+        try (OutputStream out = new DigestOutputStream((offset > 0)
+                ? Files.newOutputStream(file.local, StandardOpenOption.APPEND)
+                : Files.newOutputStream(file.local), digest)) {
+            channel.get(file.remote, out, progress.getMonitor(),
+                    (offset > 0) ? ChannelSftp.RESUME : ChannelSftp.OVERWRITE, offset);
+        }
+        // a cancelling monitor stops the transfer without an exception
+        progress.checkCancelled();
+        byteCount.addAndGet(file.attrs.getSize() - offset);
+        return DeltaEncoder.toHex(digest.digest());
+    }
+
+    /**
+     * Get the offset at which to resume the transfer to a partial target file.
+     * <p>
+     * <b>NOTE</b>: The content of the target isn't compared with the source unless verification is enabled. A target
+     * that was last modified before its source is assumed to be stale rather than a partial copy.
+     *
+     * @param targetSize size of the existing target file
+     * @param targetTime modification time of the existing target file (seconds since the epoch)
+     * @param sourceSize size of the source file
+     * @param sourceTime modification time of the source file (seconds since the epoch)
+     * @return resume offset; '0' if the target is longer than the source or older than the source (and therefore
+     *         can't be a partial copy of it)
+     */
+    private static long getResumeOffset(long targetSize, long targetTime, long sourceSize, long sourceTime) {
+        return (targetSize <= sourceSize && targetTime >= sourceTime) ? targetSize : 0;
+    }
+
+    /**
+     * Get the offset at which to resume the upload to a partial remote file.
+     *
+     * @param attrs attributes of the existing remote file; 'null' if it doesn't exist
+     * @param sourceSize size of the local file
+     * @param sourceTime modification time of the local file (seconds since the epoch)
+     * @return resume offset; '0' if the remote file doesn't exist or can't be a partial copy of the local file
+     */
+    private static long getResumeOffset(SftpATTRS attrs, long sourceSize, long sourceTime) {
+        return (attrs == null) ? 0
+                : getResumeOffset(attrs.getSize(), attrs.getMTime() & 0xFFFFFFFFL, sourceSize, sourceTime);
+    }
+
+    /**
+     * Get the attributes of the specified remote file.
+     *
+     * @param channel connected SFTP channel
+     * @param remotePath remote file path
+     * @return attributes of the remote file; 'null' if it doesn't exist
+     * @throws SftpException if an SFTP error occurs
+     */
+    private static SftpATTRS getRemoteAttrs(ChannelSftp channel, String remotePath) throws SftpException {
+        try {
+            return channel.stat(remotePath);
+        } catch (SftpException e) {
+            if (e.id != ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                throw e;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Determine if the specified SHA-256 checksum of a transferred local file matches that of the specified remote
+     * file. The remote checksum is computed on the host by {@code sha256sum} over an exec channel of the shared
+     * session.
+     *
+     * @param channel connected SFTP channel
+     * @param expect checksum of the local file, computed as it was transferred
+     * @param remotePath remote file path
+     * @return 'true' if the checksums match; otherwise 'false'
+     * @throws SftpException if the remote path cannot be resolved
+     */
+    private boolean isChecksumMatch(ChannelSftp channel, String expect, String remotePath) throws SftpException {
+        String output = exec("sha256sum -- " + SshUtils.quote(getExecPath(channel, remotePath))).trim();
+        // 'sha256sum' prefixes the line with a backslash if the file name contains special characters
+        String actual = output.replaceFirst("^\\\\", "").split("\\s+", 2)[0];
+        return expect.equalsIgnoreCase(actual);
+    }
+
+    /**
+     * Execute the specified command on the remote host over an exec channel of the shared session.
+     * <p>
+     * <b>NOTE</b>: Remote paths in the command must be {@link #getExecPath(ChannelSftp, String) absolute}, because
+     * the working directory of an exec channel is determined by the server.
+     *
+     * @param command command to be executed
+     * @return output from executed command
+     */
+    private String exec(String command) {
+        try (SessionHolder<ChannelExec> session = host.openChannel(ChannelType.EXEC)) {
+            return SshUtils.exec(session, command);
+        }
+    }
+
+    /**
+     * Compute the SHA-256 checksum of the specified local file.
+     *
+     * @param file local file
+     * @return checksum of the local file as a lower-case hexadecimal string
+     * @throws IOException if an I/O error occurs
+     */
+    private static String checksum(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            readFully(in, Files.size(file));
+        }
+        return DeltaEncoder.toHex(digest.digest());
+    }
+
+    /**
+     * Create a new SHA-256 message digest.
+     *
+     * @return SHA-256 message digest
+     */
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is a required algorithm", e);
+        }
+    }
+
+    /**
+     * Read and discard the specified number of bytes from the specified stream.
+     * <p>
+     * <b>NOTE</b>: Unlike {@link InputStream#skip(long) skip}, this passes the bytes through any filters (such as a
+     * digest) wrapped around the stream.
+     *
+     * @param in input stream
+     * @param length number of bytes to read
+     * @throws IOException if an I/O error occurs or the stream ends before the specified number of bytes
+     */
+    private static void readFully(InputStream in, long length) throws IOException {
+        byte[] buffer = new byte[SEGMENT_BUFFER_SIZE];
+        long remaining = length;
+        while (remaining > 0) {
+            int count = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (count < 0) {
+                throw new EOFException("File ended " + remaining + " bytes before the resume offset");
+            }
+            remaining -= count;
+        }
+    }
+
+    /**
+     * Get the path by which the specified remote file is reached from an exec channel. The path is resolved to
+     * its canonical absolute form by the SFTP server, so it doesn't depend on the exec working directory.
+     *
+     * @param channel connected SFTP channel
+     * @param remotePath remote file path
+     * @return absolute path of the remote file
+     * @throws SftpException if the remote path cannot be resolved
+     */
+    private static String getExecPath(ChannelSftp channel, String remotePath) throws SftpException {
+        return channel.realpath(remotePath);
+    }
+
+    /**
+     * Determine if the specified remote file should be downloaded in segments.
+     *
+     * @param file remote file with local counterpart
+     * @return 'true' if the file spans at least two segments, multiple channels are available, and resumable
+     *         transfers are disabled
+     */
+    private boolean isSegmented(RemoteFile file) {
+        long segmentSize = options.getSegmentSize();
+        // segments finish out of order, so a failed segmented download leaves no resumable prefix
+        return (segmentSize > 0) && (options.getChannels() > 1) && !options.isResume()
+                && (file.attrs.getSize() / 2 >= segmentSize);
+    }
+
+    /**
+     * Download the specified remote file as concurrent byte ranges, each fetched over its own SFTP channel and
+     * written directly to its position in the local file.
+     * <p>
+     * If verification is enabled, the checksum of the assembled local file is compared with that of the remote file.
+     * If the checksums don't match, the local file is replaced in full and verified again.
+     *
+     * @param file remote file with local counterpart
+     * @throws Exception if the download fails
+     */
+    private void downloadSegmented(RemoteFile file) throws Exception {
+        long size = file.attrs.getSize();
+        long segmentSize = options.getSegmentSize();
+        List<Segment> segments = new ArrayList<>();
+        for (long offset = 0; offset < size; offset += segmentSize) {
+            segments.add(new Segment(offset, Math.min(segmentSize, size - offset)));
+        }
+
+        try (FileChannel out = FileChannel.open(file.local,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            transferAll(segments, (channel, segment) -> downloadSegment(channel, file.remote, out, segment));
+        }
+        if (options.isVerify()) {
+            try (SessionHolder<ChannelSftp> holder = openChannel()) {
+                ChannelSftp channel = holder.getChannel();
+                // segments are written out of order, so the checksum is computed from the assembled file
+                if (!isChecksumMatch(channel, checksum(file.local), file.remote)) {
+                    // one of the segments is corrupt; replace the local file in full and verify again
+                    if (!isChecksumMatch(channel, get(channel, file, 0), file.remote)) {
+                        throw new IOException("Checksum mismatch after download: " + file.remote);
+                    }
+                }
+            }
+        }
+        fileCount.incrementAndGet();
+        if (options.isPreserve()) {
+            setLocalAttributes(file.local, file.attrs);
+        }
+    }
+
+    /**
+     * Download the specified byte range of a remote file to the same position in the specified local file.
+     *
+     * @param channel connected SFTP channel
+     * @param remotePath remote file path
+     * @param out local file channel
+     * @param segment byte range to be downloaded
+     * @throws SftpException if an SFTP error occurs
+     * @throws IOException if an I/O error occurs or the remote file ends before the end of the segment
+     */
+    private void downloadSegment(ChannelSftp channel, String remotePath, FileChannel out, Segment segment)
+            throws SftpException, IOException {
+        byte[] buffer = new byte[SEGMENT_BUFFER_SIZE];
+        long position = segment.offset;
+        long remaining = segment.length;
+        // closing the stream cancels any read-ahead requests past the end of the segment
+        try (InputStream in = channel.get(remotePath, null, segment.offset)) {
+            while (remaining > 0) {
+                int count = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (count < 0) {
+                    throw new EOFException("Remote file ended at offset " + position + ": " + remotePath);
+                }
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, count);
+                while (chunk.hasRemaining()) {
+                    position += out.write(chunk, position);
+                }
+                remaining -= count;
+                byteCount.addAndGet(count);
+                progress.add(count);
+                progress.checkCancelled();
+            }
+        }
+    }
+
+    /**
+     * Create the specified remote directory if it doesn't already exist.
+     *
+     * @param channel connected SFTP channel
+     * @param remotePath remote directory path
+     * @throws SftpException if an SFTP error occurs
+     */
+    private static void mkdir(ChannelSftp channel, String remotePath) throws SftpException {
+        try {
+            channel.stat(remotePath);
+        } catch (SftpException e) {
+            if (e.id != ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                throw e;
+            }
+            channel.mkdir(remotePath);
+        }
+    }
+
+    /**
+     * Apply the permissions and modification time of the specified local file to the specified remote path.
+     *
+     * @param channel connected SFTP channel
+     * @param local local file or directory
+     * @param remotePath remote file or directory path
+     * @throws SftpException if an SFTP error occurs
+     * @throws IOException if local attributes cannot be read
+     */
+    private static void setRemoteAttributes(ChannelSftp channel, Path local, String remotePath)
+            throws SftpException, IOException {
+        try {
+            int mode = 0;
+            for (PosixFilePermission permission : Files.getPosixFilePermissions(local)) {
+                mode |= 0400 >> permission.ordinal();
+            }
+            channel.chmod(mode, remotePath);
+        } catch (UnsupportedOperationException e) {
+            // local file system doesn't support POSIX permissions
+        }
+        channel.setMtime(remotePath, (int) Files.getLastModifiedTime(local).to(TimeUnit.SECONDS));
+    }
+
+    /**
+     * Apply the specified remote permissions and modification time to the specified local file.
+     *
+     * @param local local file or directory
+     * @param attrs remote attributes
+     * @throws IOException if local attributes cannot be written
+     */
+    private static void setLocalAttributes(Path local, SftpATTRS attrs) throws IOException {
+        if ((attrs.getFlags() & SftpATTRS.SSH_FILEXFER_ATTR_PERMISSIONS) != 0) {
+            Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+            for (PosixFilePermission permission : PERMISSIONS) {
+                if ((attrs.getPermissions() & (0400 >> permission.ordinal())) != 0) {
+                    permissions.add(permission);
+                }
+            }
+            try {
+                Files.setPosixFilePermissions(local, permissions);
+            } catch (UnsupportedOperationException e) {
+                // local file system doesn't support POSIX permissions
+            }
+        }
+        if ((attrs.getFlags() & SftpATTRS.SSH_FILEXFER_ATTR_ACMODTIME) != 0) {
+            Files.setLastModifiedTime(local, FileTime.from(attrs.getMTime() & 0xFFFFFFFFL, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * Cancel this transfer, disconnecting its SFTP channels. Blocked reads and writes on those channels fail, and
+     * no further channels are opened.
+     */
+    void cancel() {
+        cancelled = true;
+        for (SessionHolder<ChannelSftp> holder : channels) {
+            holder.getChannel().disconnect();
+        }
+    }
+
+    /**
+     * Open and connect a new SFTP channel on the shared session.
+     *
+     * @return session holder for the connected channel
+     * @throws JSchException if the channel cannot be connected
+     * @throws CancellationException if this transfer has been cancelled
+     */
+    private SessionHolder<ChannelSftp> openChannel() throws JSchException {
+        SessionHolder<ChannelSftp> holder = host.openChannel(ChannelType.SFTP);
+        try {
+            holder.connect();
+        } catch (JSchException e) {
+            holder.close();
+            throw e;
+        }
+        channels.add(holder);
+        // re-check after publishing the channel; a concurrent 'cancel' may have missed it
+        if (cancelled) {
+            holder.close();
+            throw new CancellationException("Transfer cancelled");
+        }
+        return holder;
+    }
+
+    /**
+     * Get the remote counterpart of the specified local path.
+     *
+     * @param targetRoot remote counterpart of the source root
+     * @param sourceRoot local source root
+     * @param path local path within the source root
+     * @return remote path
+     */
+    private static String remotePath(String targetRoot, Path sourceRoot, Path path) {
+        String remote = targetRoot;
+        for (Path name : sourceRoot.relativize(path)) {
+            if (!name.toString().isEmpty()) {
+                remote = join(remote, name.toString());
+            }
+        }
+        return remote;
+    }
+
+    /**
+     * Join the specified remote path and name.
+     *
+     * @param path remote path
+     * @param name file name
+     * @return joined remote path
+     */
+    private static String join(String path, String name) {
+        return path.endsWith("/") ? path + name : path + "/" + name;
+    }
+
+    /**
+     * Remove the trailing slash (if any) from the specified remote path, unless it's the root directory.
+     *
+     * @param path remote path
+     * @return remote path without trailing slash
+     */
+    private static String trimTrailingSlash(String path) {
+        return (path.length() > 1 && path.endsWith("/")) ? path.substring(0, path.length() - 1) : path;
+    }
+
+    /**
+     * Get the result of this transfer, delivering the final progress update.
+     *
+     * @return transfer result
+     */
+    private TransferResult getResult() {
+        progress.complete();
+        return new TransferResult(fileCount.get(), byteCount.get(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+}
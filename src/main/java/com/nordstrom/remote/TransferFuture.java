@@ -0,0 +1,56 @@
+package com.nordstrom.remote;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * This class is a {@link CompletableFuture} for an SSH file transfer. Cancelling the future disconnects the SFTP
+ * channels of the transfer, which stops the transfer and releases the thread that's running it.
+ * <p>
+ * <b>NOTE</b>: As with any {@link CompletableFuture}, cancelling a dependent stage (e.g. - the result of
+ * {@link #thenApply(Function) thenApply}) doesn't cancel this future.
+ *
+ * @param <T> result type of the future
+ */
+class TransferFuture<T> extends CompletableFuture<T> {
+
+    private volatile SftpTransfer transfer;
+
+    /**
+     * Cancel this future, disconnecting the channels of the transfer if it's been started.
+     *
+     * @param mayInterruptIfRunning ignored; the transfer is stopped by disconnecting its channels
+     * @return 'true' if this future is now cancelled
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled) {
+            disconnect();
+        }
+        return cancelled;
+    }
+
+    /**
+     * Publish the specified transfer, which is stopped if this future is cancelled.
+     *
+     * @param transfer file transfer that completes this future
+     */
+    void setTransfer(SftpTransfer transfer) {
+        this.transfer = transfer;
+        // re-check after publishing the transfer; a concurrent 'cancel' may have missed it
+        if (isCancelled()) {
+            disconnect();
+        }
+    }
+
+    /**
+     * Disconnect the channels of the transfer (if any).
+     */
+    private void disconnect() {
+        SftpTransfer active = transfer;
+        if (active != null) {
+            active.cancel();
+        }
+    }
+}
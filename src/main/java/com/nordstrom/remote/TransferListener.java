@@ -0,0 +1,27 @@
+package com.nordstrom.remote;
+
+/**
+ * Implementations of this interface receive progress updates for SSH file transfers via
+ * {@link SshUtils#sftp(String, String, TransferOptions) sftp}.
+ * <p>
+ * Updates are rate-limited to the progress interval of the {@link TransferOptions}, with a final update when the
+ * transfer completes. They may arrive on any of the transfer threads, but are never delivered concurrently.
+ *
+ * <pre><code>    TransferOptions options = new TransferOptions().setListener(progress -&gt; {
+ *        System.out.println(progress);
+ *        return !stopRequested;
+ *    });</code></pre>
+ */
+@FunctionalInterface
+public interface TransferListener {
+
+    /**
+     * Handle the specified progress update.
+     * <p>
+     * <b>NOTE</b>: This method is called while a transfer channel waits, so it should return quickly.
+     *
+     * @param progress progress of the transfer
+     * @return 'true' to continue the transfer; 'false' to cancel it
+     */
+    boolean onProgress(TransferProgress progress);
+}
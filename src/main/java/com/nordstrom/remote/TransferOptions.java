@@ -0,0 +1,245 @@
+package com.nordstrom.remote;
+
+import com.nordstrom.remote.RemoteConfig.RemoteSettings;
+
+/**
+ * This class specifies options for SSH file transfers via
+ * {@link SshUtils#sftp(String, String, TransferOptions) sftp}.
+ *
+ * <pre><code>    TransferOptions options = new TransferOptions().setChannels(8).setPreserve(true);</code></pre>
+ */
+public class TransferOptions {
+
+    private int channels;
+    private boolean preserve;
+    private long segmentSize;
+    private boolean resume;
+    private boolean verify;
+    private boolean delta;
+    private TransferListener listener;
+    private long progressInterval;
+
+    /**
+     * Constructor for transfer options with channel count from the <b>SFTP_CHANNELS</b> setting and attribute
+     * preservation from the <b>SFTP_PRESERVE</b> setting, segment size from the <b>SFTP_SEGMENT_SIZE</b> setting,
+     * resumable transfers from the <b>SFTP_RESUME</b> setting, checksum verification from the <b>SFTP_VERIFY</b>
+     * setting, delta upload from the <b>SFTP_DELTA</b> setting, and progress interval from the
+     * <b>SFTP_PROGRESS_INTERVAL</b> setting.
+     */
+    public TransferOptions() {
+        RemoteConfig config = RemoteConfig.getConfig();
+        channels = config.getInt(RemoteSettings.SFTP_CHANNELS.key());
+        preserve = config.getBoolean(RemoteSettings.SFTP_PRESERVE.key());
+        segmentSize = config.getLong(RemoteSettings.SFTP_SEGMENT_SIZE.key());
+        resume = config.getBoolean(RemoteSettings.SFTP_RESUME.key());
+        verify = config.getBoolean(RemoteSettings.SFTP_VERIFY.key());
+        delta = config.getBoolean(RemoteSettings.SFTP_DELTA.key());
+        progressInterval = config.getLong(RemoteSettings.SFTP_PROGRESS_INTERVAL.key());
+    }
+
+    /**
+     * Constructor for a copy of the specified transfer options.
+     *
+     * @param other transfer options to be copied
+     */
+    TransferOptions(TransferOptions other) {
+        channels = other.channels;
+        preserve = other.preserve;
+        segmentSize = other.segmentSize;
+        resume = other.resume;
+        verify = other.verify;
+        delta = other.delta;
+        listener = other.listener;
+        progressInterval = other.progressInterval;
+    }
+
+    /**
+     * Get the maximum number of SFTP channels over which files are transferred concurrently.
+     *
+     * @return SFTP channel count
+     */
+    public int getChannels() {
+        return channels;
+    }
+
+    /**
+     * Set the maximum number of SFTP channels over which files are transferred concurrently.
+     * <p>
+     * <b>NOTE</b>: All channels share a single session, so this value should not exceed the {@code MaxSessions}
+     * setting of the remote SSH server. If verification or delta upload is enabled, each SFTP channel may be paired
+     * with an exec channel, so this value should not exceed half of that setting.
+     *
+     * @param channels SFTP channel count
+     * @return this {@link TransferOptions} object
+     */
+    public TransferOptions setChannels(int channels) {
+        if (channels < 1) {
+            throw new IllegalArgumentException("Channel count must be positive: " + channels);
+        }
+        this.channels = channels;
+        return this;
+    }
+
+    /**
+     * Determine if permissions and modification times are preserved.
+     *
+     * @return 'true' if attributes are preserved; otherwise 'false'
+     */
+    public boolean isPreserve() {
+        return preserve;
+    }
+
+    /**
+     * Specify whether permissions and modification times are preserved.
+     *
+     * @param preserve 'true' to preserve attributes; otherwise 'false'
+     * @return this {@link TransferOptions} object
+     */
+    public TransferOptions setPreserve(boolean preserve) {
+        this.preserve = preserve;
+        return this;
+    }
+
+    /**
+     * Get the size of the byte ranges into which large files are split for segmented download.
+     *
+     * @return segment size in bytes; '0' if segmented download is disabled
+     */
+    public long getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Set the size of the byte ranges into which large files are split for segmented download. Remote files of at
+     * least twice this size are fetched as concurrent byte ranges over the available SFTP channels, with each range
+     * written directly to its position in the local file.
+     *
+     * @param segmentSize segment size in bytes; '0' to disable segmented download
+     * @return this {@link TransferOptions} object
+     */
+    public TransferOptions setSegmentSize(long segmentSize) {
+        if (segmentSize < 0) {
+            throw new IllegalArgumentException("Segment size must not be negative: " + segmentSize);
+        }
+        this.segmentSize = segmentSize;
+        return this;
+    }
+
+    /**
+     * Determine if interrupted transfers are resumed.
+     *
+     * @return 'true' if transfers are resumed; otherwise 'false'
+     */
+    public boolean isResume() {
+        return resume;
+    }
+
+    /**
+     * Specify whether interrupted transfers are resumed. If enabled, a target file that's no longer than its source
+     * is treated as a partial copy, and only the bytes beyond its end are transferred. Segmented download is
+     * disabled for resumable transfers.
+     * <p>
+     * <b>NOTE</b>: A partial target is assumed to be a prefix of its source unless it was last modified before the
+     * source. Its content isn't compared with the source; enable verification to confirm this.
+     *
+     * @param resume 'true' to resume transfers; otherwise 'false'
+     * @return this {@link TransferOptions} object
+     */
+    public TransferOptions setResume(boolean resume) {
+        this.resume = resume;
+        return this;
+    }
+
+    /**
+     * Determine if transferred files are verified by checksum.
+     *
+     * @return 'true' if files are verified; otherwise 'false'
+     */
+    public boolean isVerify() {
+        return verify;
+    }
+
+    /**
+     * Specify whether transferred files are verified by checksum. If enabled, the SHA-256 checksum of each local
+     * file is compared with that of its remote counterpart, which is computed by {@code sha256sum} on the remote
+     * host. If the checksums of a resumed transfer don't match, the file is transferred again in full.
+     *
+     * @param verify 'true' to verify files; otherwise 'false'
+     * @return this {@link TransferOptions} object
+     */
+    public TransferOptions setVerify(boolean verify) {
+        this.verify = verify;
+        return this;
+    }
+
+    /**
+     * Determine if files are uploaded as deltas against existing remote files.
+     *
+     * @return 'true' if delta upload is enabled; otherwise 'false'
+     */
+    public boolean isDelta() {
+        return delta;
+    }
+
+    /**
+     * Specify whether files are uploaded as deltas against existing remote files. If enabled, block signatures of
+     * an existing remote file are computed on the host, and only the local data that doesn't match a remote block
+     * is sent, along with instructions to copy the matching blocks. The file is rebuilt on the host and verified by
+     * checksum. Files without a remote counterpart are uploaded in full.
+     * <p>
+     * <b>NOTE</b>: Delta upload requires {@code python3} on the remote host; without it, files are uploaded in
+     * full. Delta upload takes precedence over resumable upload.
+     *
+     * @param delta 'true' to enable delta upload; otherwise 'false'
+     * @return this {@link TransferOptions} object
+     */
+    public TransferOptions setDelta(boolean delta) {
+        this.delta = delta;
+        return this;
+    }
+
+    /**
+     * Get the listener for transfer progress updates.
+     *
+     * @return transfer listener; 'null' if none
+     */
+    public TransferListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Set the listener for transfer progress updates. The listener can cancel the transfer by returning 'false',
+     * in which case {@link SshUtils#sftp(String, String, TransferOptions) sftp} throws an exception whose cause is
+     * a {@link java.util.concurrent.CancellationException CancellationException}.
+     *
+     * @param listener transfer listener; 'null' for none
+     * @return this {@link TransferOptions} object
+     */
+    public TransferOptions setListener(TransferListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Get the minimum interval between transfer progress updates.
+     *
+     * @return progress interval in milliseconds
+     */
+    public long getProgressInterval() {
+        return progressInterval;
+    }
+
+    /**
+     * Set the minimum interval between transfer progress updates.
+     *
+     * @param progressInterval progress interval in milliseconds
+     * @return this {@link TransferOptions} object
+     */
+    public TransferOptions setProgressInterval(long progressInterval) {
+        if (progressInterval < 0) {
+            throw new IllegalArgumentException("Progress interval must not be negative: " + progressInterval);
+        }
+        this.progressInterval = progressInterval;
+        return this;
+    }
+}
@@ -0,0 +1,104 @@
+package com.nordstrom.remote;
+
+/**
+ * This class records the progress of an SSH file transfer, as reported to a {@link TransferListener}.
+ */
+public class TransferProgress {
+
+    private final long bytes;
+    private final long totalBytes;
+    private final long millis;
+    private final double bytesPerSecond;
+    private final boolean complete;
+
+    /**
+     * Constructor for file transfer progress
+     *
+     * @param bytes number of bytes transferred so far
+     * @param totalBytes total number of bytes to be transferred
+     * @param millis elapsed transfer interval in milliseconds
+     * @param bytesPerSecond throughput since the previous update
+     * @param complete 'true' if this is the final update
+     */
+    TransferProgress(long bytes, long totalBytes, long millis, double bytesPerSecond, boolean complete) {
+        this.bytes = bytes;
+        this.totalBytes = totalBytes;
+        this.millis = millis;
+        this.bytesPerSecond = bytesPerSecond;
+        this.complete = complete;
+    }
+
+    /**
+     * Get the number of bytes transferred so far.
+     *
+     * @return byte count
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Get the total number of bytes to be transferred.
+     *
+     * @return total byte count
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Get the elapsed transfer interval.
+     *
+     * @return elapsed interval in milliseconds
+     */
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * Get the instantaneous throughput: bytes transferred since the previous update, divided by the interval since
+     * the previous update.
+     *
+     * @return throughput in bytes per second
+     */
+    public double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Get the average throughput since the start of the transfer.
+     *
+     * @return throughput in bytes per second
+     */
+    public double getAverageBytesPerSecond() {
+        return (bytes * 1000.0) / Math.max(millis, 1);
+    }
+
+    /**
+     * Get the estimated time remaining, based on the average throughput.
+     *
+     * @return estimated time remaining in milliseconds; -1 if no estimate is available
+     */
+    public long getRemainingMillis() {
+        if (complete) return 0;
+        double average = getAverageBytesPerSecond();
+        if (bytes == 0 || average <= 0) return -1;
+        return (long) (Math.max(totalBytes - bytes, 0) * 1000.0 / average);
+    }
+
+    /**
+     * Determine if this is the final update of the transfer.
+     *
+     * @return 'true' if the transfer is complete; otherwise 'false'
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d of %d bytes in %d ms (%.2f MB/s; average %.2f MB/s; %d ms remaining)", bytes,
+                totalBytes, millis, bytesPerSecond / (1024 * 1024), getAverageBytesPerSecond() / (1024 * 1024),
+                getRemainingMillis());
+    }
+}
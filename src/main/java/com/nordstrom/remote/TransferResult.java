@@ -0,0 +1,67 @@
+package com.nordstrom.remote;
+
+/**
+ * This class records the outcome of an SSH file transfer via
+ * {@link SshUtils#sftp(String, String, TransferOptions) sftp}.
+ */
+public class TransferResult {
+
+    private final long files;
+    private final long bytes;
+    private final long millis;
+
+    /**
+     * Constructor for file transfer result
+     *
+     * @param files number of files transferred
+     * @param bytes number of bytes transferred
+     * @param millis elapsed transfer interval in milliseconds
+     */
+    TransferResult(long files, long bytes, long millis) {
+        this.files = files;
+        this.bytes = bytes;
+        this.millis = millis;
+    }
+
+    /**
+     * Get the number of files transferred.
+     *
+     * @return file count
+     */
+    public long getFiles() {
+        return files;
+    }
+
+    /**
+     * Get the number of bytes transferred.
+     *
+     * @return byte count
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Get the elapsed transfer interval.
+     *
+     * @return elapsed interval in milliseconds
+     */
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * Get the transfer throughput.
+     *
+     * @return throughput in bytes per second
+     */
+    public double getBytesPerSecond() {
+        return (bytes * 1000.0) / Math.max(millis, 1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d files, %d bytes in %d ms (%.2f MB/s)", files, bytes, millis,
+                getBytesPerSecond() / (1024 * 1024));
+    }
+}
@@ -0,0 +1,63 @@
+package com.nordstrom.remote;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.nordstrom.remote.RemoteConfig.RemoteSettings;
+
+/**
+ * This class creates the executors that run blocking remote tasks (async operations, fan-out workers, and stream
+ * drainers).
+ * <p>
+ * <b>NOTE</b>: This is the Java 21 implementation, which uses virtual threads unless the <b>VIRTUAL_THREADS</b>
+ * setting is 'false'. Tasks that wait for remote completion park their virtual thread, so tens of thousands of
+ * concurrent remote tasks need only a handful of carrier threads. Stream drainers, which block in JSch pipe reads
+ * inside a monitor, always use platform threads.
+ */
+final class RemoteThreads {
+
+    private RemoteThreads() {
+        throw new AssertionError("RemoteThreads is a static utility class that cannot be instantiated");
+    }
+
+    /**
+     * Determine if remote task executors use virtual threads.
+     *
+     * @return 'true' if virtual threads are used; otherwise 'false'
+     */
+    static boolean isVirtual() {
+        return RemoteConfig.getConfig().getBoolean(RemoteSettings.VIRTUAL_THREADS.key());
+    }
+
+    /**
+     * Create an executor that runs each task on its own thread, reusing idle threads when available.
+     *
+     * @param name name prefix for executor threads
+     * @return executor service for remote tasks
+     */
+    static ExecutorService newExecutor(String name) {
+        if (isVirtual()) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 1).factory());
+        }
+        return newPlatformExecutor(name);
+    }
+
+    /**
+     * Create an executor that runs each task on its own platform daemon thread, reusing idle threads when available.
+     * <p>
+     * <b>NOTE</b>: This executor is for tasks that block in JSch pipe reads, which wait inside a monitor and would
+     * pin the carrier thread of a virtual thread.
+     *
+     * @param name name prefix for executor threads
+     * @return executor service for blocking stream readers
+     */
+    static ExecutorService newPlatformExecutor(String name) {
+        AtomicInteger index = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
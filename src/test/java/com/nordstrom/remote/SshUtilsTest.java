@@ -1,28 +1,64 @@
 package com.nordstrom.remote;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+import static org.testng.Assert.fail;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
 import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.PublicKey;
+import java.security.interfaces.RSAPublicKey;
 import java.security.spec.RSAPublicKeySpec;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
-import org.apache.sshd.common.file.virtualfs.VirtualFileSystemFactory;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.sshd.common.file.nativefs.NativeFileSystemFactory;
+import org.apache.sshd.common.kex.KexProposalOption;
 import org.apache.sshd.common.keyprovider.KeyPairProvider;
 import org.apache.sshd.core.CoreModuleProperties;
 import org.apache.sshd.server.Environment;
@@ -30,37 +66,67 @@ import org.apache.sshd.server.ExitCallback;
 import org.apache.sshd.server.SshServer;
 import org.apache.sshd.server.channel.ChannelSession;
 import org.apache.sshd.server.command.Command;
+import org.apache.sshd.server.forward.AcceptAllForwardingFilter;
+import org.apache.sshd.server.shell.ProcessShellFactory;
+import org.apache.sshd.sftp.server.SftpSubsystem;
 import org.apache.sshd.sftp.server.SftpSubsystemFactory;
+import org.testng.Reporter;
+import org.testng.SkipException;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
 import com.jcraft.jsch.Buffer;
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.HostKey;
+import com.jcraft.jsch.HostKeyRepository;
 import com.jcraft.jsch.JSch;
+import com.nordstrom.remote.MetricsRecorder.Phase;
 import com.nordstrom.remote.RemoteConfig.RemoteSettings;
+import com.nordstrom.remote.SshUtils.ChannelType;
+import com.nordstrom.remote.SshUtils.SessionHolder;
+import com.nordstrom.remote.SshUtils.StreamType;
 
 public class SshUtilsTest {
     private SshServer sshd;
     private int port;
     private Path mockRemoteRoot;
+    private KeyPair hostPair;
     private PublicKey clientPublicKey;
     private Path clientPrivateKeyPath;
     private final String USER = "tester";
     private final String PASS = "password123";
+    private static final String SLEEP_COMMAND = "Remote-Session-Sleep ";
+    private static final ScheduledExecutorService SLEEPER = Executors.newScheduledThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "mock-command-sleeper");
+        thread.setDaemon(true);
+        return thread;
+    });
 
-    @BeforeClass
+    @BeforeClass(alwaysRun = true)
     public void startServer() throws Exception {
-        sshd = SshServer.setUpDefaultServer();
-        sshd.setPort(0);
-        
         // 2. Setup Host Key (The server's identity)
         KeyPairGenerator hostGen = KeyPairGenerator.getInstance("RSA");
         hostGen.initialize(2048);
-        KeyPair hostPair = hostGen.generateKeyPair();
-        sshd.setKeyPairProvider(KeyPairProvider.wrap(hostPair));
+        hostPair = hostGen.generateKeyPair();
 
         generateClientIdentity();
         
+        mockRemoteRoot = Files.createTempDirectory("ssh_remote_root");
+        
+        sshd = newServer();
+        port = sshd.getPort();
+        updateKnownHostsWithActualPort(this.port, hostPair);
+    }
+    
+    /**
+     * Create and start a mock SSH server with an ephemeral port, sharing the host key and remote root.
+     */
+    private SshServer newServer() throws IOException {
+        SshServer sshd = SshServer.setUpDefaultServer();
+        sshd.setPort(0);
+        sshd.setKeyPairProvider(KeyPairProvider.wrap(hostPair));
+        
         // 3. Integrated Authenticators
         sshd.setPasswordAuthenticator((u, p, s) -> USER.equals(u) && PASS.equals(p));
         
@@ -73,19 +139,39 @@ public class SshUtilsTest {
         
         // Requires both publickey AND password to succeed
         sshd.getProperties().put(CoreModuleProperties.AUTH_METHODS.getName(), "publickey,password");
+        // Disable Nagle's algorithm to avoid delayed-ACK stalls on small responses
+        CoreModuleProperties.TCP_NODELAY.set(sshd, true);
         
-        mockRemoteRoot = Files.createTempDirectory("ssh_remote_root");
-        sshd.setFileSystemFactory(new VirtualFileSystemFactory(mockRemoteRoot));
+        sshd.setFileSystemFactory(NativeFileSystemFactory.INSTANCE);
+        sshd.setForwardingFilter(AcceptAllForwardingFilter.INSTANCE);
         
         sshd.setCommandFactory((channel, command) -> new Command() {
+            private InputStream in;
             private OutputStream out;
+            private OutputStream err;
             private ExitCallback callback;
 
+            @Override public void setInputStream(InputStream in) { this.in = in; }
             @Override public void setOutputStream(OutputStream out) { this.out = out; }
+            @Override public void setErrorStream(OutputStream err) { this.err = err; }
             @Override public void setExitCallback(ExitCallback callback) { this.callback = callback; }
 
             @Override
             public void start(ChannelSession channel, Environment env) throws IOException {
+                if (command.startsWith(SLEEP_COMMAND)) {
+                    // simulate a long-running command without tying up a server thread
+                    long millis = Long.parseLong(command.substring(SLEEP_COMMAND.length()).trim());
+                    SLEEPER.schedule(() -> {
+                        try {
+                            out.write("done\n".getBytes());
+                            out.flush();
+                            callback.onExit(0);
+                        } catch (IOException e) {
+                            callback.onExit(2, e.getMessage());
+                        }
+                    }, millis, TimeUnit.MILLISECONDS);
+                    return;
+                }
                 new Thread(() -> {
                     try {
                         if (command.contains("Remote-Session-Test")) {
@@ -93,24 +179,36 @@ public class SshUtilsTest {
                             out.flush();
                             callback.onExit(0);
                         } else {
-                            callback.onExit(1, "Unexpected command: " + command);
+                            callback.onExit(runProcess(command, in, out, err));
                         }
                     } catch (IOException e) {
                         callback.onExit(2, e.getMessage());
+                    } catch (InterruptedException e) {
+                        callback.onExit(3, e.getMessage());
                     }
                 }).start();
             }
 
             @Override public void destroy(ChannelSession channel) {}
-            @Override public void setInputStream(InputStream in) {}
-            @Override public void setErrorStream(OutputStream err) {}
         });
         
-        sshd.setSubsystemFactories(Collections.singletonList(new SftpSubsystemFactory()));
+        sshd.setShellFactory(new ProcessShellFactory("/bin/sh", "/bin/sh"));
+        sshd.setSubsystemFactories(Collections.singletonList(new SftpSubsystemFactory() {
+            @Override
+            public Command createSubsystem(ChannelSession channel) throws IOException {
+                // like exec commands, SFTP starts in the remote root but sees the whole file system
+                return new SftpSubsystem(channel, this) {
+                    @Override
+                    public void setFileSystem(FileSystem fileSystem) {
+                        super.setFileSystem(fileSystem);
+                        defaultDir = mockRemoteRoot;
+                    }
+                };
+            }
+        }));
         
         sshd.start();
-        port = sshd.getPort();
-        updateKnownHostsWithActualPort(this.port, hostPair);
+        return sshd;
     }
 
     @AfterClass(alwaysRun = true)
@@ -154,6 +252,692 @@ public class SshUtilsTest {
         assertEquals(result.trim(), "Remote-Session-Test", "Command result mismatch");
     }
     
+    @Test
+    public void testPooledSessionReuse() {
+        String remoteUri = String.format("ssh://%s:%s@localhost:%d", USER, PASS, port);
+        System.setProperty(RemoteSettings.SSH_KEY_NAME.key(), this.clientPrivateKeyPath.toString());
+        System.setProperty(RemoteSettings.SESSION_POOL_ENABLED.key(), "true");
+        try {
+            SessionPool pool = SessionPool.getPool();
+            long created = pool.getStats().getCreated();
+            long reused = pool.getStats().getReused();
+            for (int i = 0; i < 3; i++) {
+                assertEquals(SshUtils.exec(remoteUri, "echo 'Remote-Session-Test'"), "Remote-Session-Test");
+            }
+            SessionPool.Stats stats = pool.getStats();
+            assertEquals(stats.getCreated() - created, 1, "Expected a single pooled session");
+            assertEquals(stats.getReused() - reused, 2, "Expected pooled session to be reused");
+            assertEquals(stats.getLeased(), 0, "Expected all sessions to be returned");
+        } finally {
+            System.clearProperty(RemoteSettings.SESSION_POOL_ENABLED.key());
+            SessionPool.getPool().clear();
+        }
+    }
+    
+    @Test
+    public void testRemoteHostChannelMultiplexing() throws Exception {
+        URI remoteUri = URI.create(String.format("ssh://%s:%s@localhost:%d", USER, PASS, port));
+        System.setProperty(RemoteSettings.SSH_KEY_NAME.key(), this.clientPrivateKeyPath.toString());
+        try (RemoteHost host = new RemoteHost(remoteUri, Collections.singletonMap("StrictHostKeyChecking", "no"), 2)) {
+            List<SessionHolder<ChannelExec>> channels = host.openChannels(ChannelType.EXEC, 2);
+            assertEquals(host.getOpenChannels(), 2);
+            try {
+                host.openChannel(ChannelType.EXEC, 100, TimeUnit.MILLISECONDS);
+                fail("Expected channel request beyond limit to time out");
+            } catch (RemoteChannelInstantiationException e) {
+                // expected
+            }
+            channels.forEach(SessionHolder::close);
+            assertEquals(host.getOpenChannels(), 0);
+            
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                List<Future<String>> results = new ArrayList<>();
+                for (int i = 0; i < 8; i++) {
+                    results.add(executor.submit(() -> host.exec("echo 'Remote-Session-Test'")));
+                }
+                for (Future<String> result : results) {
+                    assertEquals(result.get(), "Remote-Session-Test");
+                }
+            } finally {
+                executor.shutdown();
+            }
+            assertEquals(host.getOpenChannels(), 0);
+        }
+    }
+    
+    @Test
+    public void testPersistentShell() {
+        String remoteUri = String.format("ssh://%s:%s@localhost:%d%s", USER, PASS, port, mockRemoteRoot);
+        System.setProperty(RemoteSettings.SSH_KEY_NAME.key(), this.clientPrivateKeyPath.toString());
+        try (RemoteShell shell = new RemoteShell(URI.create(remoteUri))) {
+            // shell state carries over from one command to the next
+            assertEquals(shell.exec("pwd -P"), mockRemoteRoot.toFile().getAbsoluteFile().toPath().toString());
+            shell.exec("export GREETING=hello; cd /");
+            assertEquals(shell.exec("echo $GREETING from $(pwd)"), "hello from /");
+
+            // output without a trailing newline, standard error, and exit status are framed per command
+            assertEquals(shell.run("printf partial").getOutput(), "partial");
+            ExecResult failed = shell.run("echo oops >&2; exit_status() { return 3; }; exit_status");
+            assertEquals(failed.getExitStatus(), 3);
+            assertEquals(failed.getOutput(), "oops\n");
+            assertTrue(failed.getException() instanceof RemoteExecutionFailedException);
+            // commands can't consume the input that follows them
+            assertEquals(shell.exec("cat; echo after"), "after");
+
+            for (int i = 0; i < 100; i++) {
+                assertEquals(shell.exec("echo " + i), Integer.toString(i));
+            }
+
+            // a command that times out closes the shell
+            try {
+                shell.run("sleep 5", 200);
+                fail("Expected command to time out");
+            } catch (RemoteExecutionFailedException e) {
+                assertTrue(e.getCause().getMessage().startsWith("Timed out"));
+            }
+            assertTrue(!shell.isOpen(), "Expected shell to be closed");
+        }
+
+        // a command that keeps producing output still times out
+        try (RemoteShell shell = new RemoteShell(URI.create(remoteUri))) {
+            long start = System.nanoTime();
+            try {
+                shell.run("for i in $(seq 1 500); do echo tick; sleep 0.01; done", 300);
+                fail("Expected command to time out");
+            } catch (RemoteExecutionFailedException e) {
+                assertTrue(e.getCause().getMessage().startsWith("Timed out"));
+            }
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 3000,
+                    "Streaming output should not extend the timeout");
+        }
+    }
+    
+    @Test
+    public void testWorkDirQuoting() throws Exception {
+        Path workDir = Files.createDirectories(mockRemoteRoot.resolve("it's a $dir"));
+        String remoteUri = new URI("ssh", USER + ":" + PASS, "localhost", port, workDir.toString(), null, null)
+                .toString();
+        System.setProperty(RemoteSettings.SSH_KEY_NAME.key(), this.clientPrivateKeyPath.toString());
+        try (RemoteShell shell = new RemoteShell(URI.create(remoteUri))) {
+            assertEquals(shell.exec("pwd"), workDir.toString());
+            assertEquals(SshUtils.execPipelined(remoteUri, Arrays.asList("pwd")).get(0).getOutput(),
+                    workDir + "\n");
+        } finally {
+            Files.delete(workDir);
+        }
+    }
+
+    @Test
+    public void testPromptMatcher() throws Exception {
+        PromptMatcher matcher = new PromptMatcher().literal("[sudo] password for").literal("sudo").regex("[$#] $");
+        // partial matches carry over between chunks; the earliest-ending prompt wins
+        assertEquals(matcher.feed("user$ echo x; [su"), null);
+        assertEquals(matcher.feed("do] password for user:").getIndex(), 1);
+        matcher.reset();
+        // regex prompts are anchored to the end of the output
+        assertEquals(matcher.feed("# not a prompt\n"), null);
+        PromptMatcher.Match match = matcher.feed("root@host:~# ");
+        assertEquals(match.getIndex(), 2);
+        assertEquals(match.getText(), "# ");
+        // the tail window stays bounded
+        matcher.reset();
+        matcher.setTailSize(16);
+        char[] filler = new char[100000];
+        Arrays.fill(filler, 'x');
+        assertEquals(matcher.feed(new String(filler)), null);
+        assertTrue(matcher.getTail().length() <= 16);
+
+        String remoteUri = String.format("ssh://%s:%s@localhost:%d", USER, PASS, port);
+        System.setProperty(RemoteSettings.SSH_KEY_NAME.key(), this.clientPrivateKeyPath.toString());
+        try (SessionHolder<ChannelExec> session = new SessionHolder<>(ChannelType.EXEC, URI.create(remoteUri))) {
+            session.getChannel().setCommand("seq 1 50000; printf 'Password: '; sleep 1; echo after");
+            SshUtils.ChannelStreams<ChannelExec> streams = session.getChannelStream();
+            session.connect();
+            AtomicLong received = new AtomicLong();
+            PromptMatcher prompts = new PromptMatcher().literal("Permission denied").regex("[Pp]assword: $");
+            match = streams.waitForPrompt(prompts, 10000, recv -> received.addAndGet(recv.length()));
+            assertEquals(match.getIndex(), 1);
+            assertTrue(match.getTail().endsWith("50000\nPassword: "));
+            assertEquals(received.get(), 288894 + "Password: ".length());
+            assertEquals(streams.waitForPrompt("after", 10000).trim(), "after");
+        }
+
+        // output that never contains the prompt doesn't extend the wait
+        try (SessionHolder<ChannelExec> session = new SessionHolder<>(ChannelType.EXEC, URI.create(remoteUri))) {
+            session.getChannel().setCommand("for i in $(seq 1 500); do echo tick; sleep 0.01; done");
+            SshUtils.ChannelStreams<ChannelExec> streams = session.getChannelStream();
+            session.connect();
+            long start = System.nanoTime();
+            assertEquals(streams.waitForPrompt(new PromptMatcher().literal("never"), 300, null), null);
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 3000,
+                    "Streaming output should not extend the wait");
+        }
+    }
+
+    @Test
+    public void testExpectScript() throws Exception {
+        String command = "printf 'Password: '; read p; "
+                + "if [ \"$p\" = secret ]; then printf 'ok> '; else echo 'Sorry, try again'; sleep 5; fi; "
+                + "read c; echo \"got $c\"; printf 'ok> '; read x";
+        ExpectScript.Branch password = ExpectScript.regex("[Pp]assword: ").thenSend("secret").thenRepeat();
+        ExpectScript script = new ExpectScript()
+                .expect(5000,
+                        password,
+                        ExpectScript.literal("Sorry, try again").thenFail("authentication failed"),
+                        ExpectScript.literal("ok> "))
+                .send("one")
+                .expect("ok> ", 5000)
+                .expectOptional(100, ExpectScript.literal("never"))
+                .send("two");
+        // the script holds its own copy of each branch
+        password.thenSend("wrong");
+        
+        String remoteUri = String.format("ssh://%s:%s@localhost:%d", USER, PASS, port);
+        System.setProperty(RemoteSettings.SSH_KEY_NAME.key(), this.clientPrivateKeyPath.toString());
+        try (SessionHolder<ChannelExec> session = new SessionHolder<>(ChannelType.EXEC, URI.create(remoteUri))) {
+            session.getChannel().setCommand(command);
+            SshUtils.ChannelStreams<ChannelExec> streams = session.getChannelStream();
+            session.connect();
+            ExpectScript.Result result = script.run(streams);
+            assertEquals(result.getSteps().size(), 3);
+            assertEquals(result.getSteps().get(0).getRepeats(), 1);
+            assertEquals(result.getSteps().get(0).getMatch().getIndex(), 2);
+            assertEquals(result.getSteps().get(1).getOutput(), "got one\nok> ");
+            assertEquals(result.getSteps().get(2).getMatch(), null);
+            assertTrue(result.getSteps().get(2).getMillis() >= 100);
+            assertEquals(result.getOutput(), "Password: ok> got one\nok> ");
+        }
+        
+        try (SessionHolder<ChannelExec> session = new SessionHolder<>(ChannelType.EXEC, URI.create(remoteUri))) {
+            session.getChannel().setCommand(command.replace("= secret", "= other"));
+            SshUtils.ChannelStreams<ChannelExec> streams = session.getChannelStream();
+            session.connect();
+            script.run(streams);
+            fail("Expected failure branch to match");
+        } catch (RemoteExpectFailedException e) {
+            assertEquals(e.getStep(), 0);
+            assertTrue(e.getMessage().endsWith("authentication failed"));
+            assertTrue(e.getResult().getOutput().endsWith("Sorry, try again"));
+        }
+    }
+
+    @Test
+    public void testMultiCommandBatch() {
+        List<String> batchCmds = Arrays.asList("echo one", "false", "cd /tmp && pwd", "X=5", "echo \"x=$X\"");
+        String remoteUri = String.format("ssh://%s:%s@localhost:%d", USER, PASS, port);
+        System.setProperty(RemoteSettings.SSH_KEY_NAME.key(), this.clientPrivateKeyPath.toString());
+        // an interactive shell stands in for the 'sudo su' batch user shell
+        String sudoCmd = "PS1='batch> ' exec /bin/sh -i 2>&1";
+        
+        List<ExecResult> results;
+        try (SessionHolder<ChannelExec> session = new SessionHolder<>(ChannelType.EXEC, URI.create(remoteUri))) {
+            results = BatchUtils.executeBatch(session, PASS, sudoCmd, "tester@localhost:", "batch> ", "/",
+                    batchCmds, false);
+        }
+        assertEquals(results.size(), 5);
+        assertEquals(results.get(0).getOutput(), "one\n");
+        assertEquals(results.get(1).getExitStatus(), 1);
+        assertTrue(results.get(1).getException() instanceof RemoteExecutionFailedException);
+        assertEquals(results.get(2).getOutput(), "/tmp\n");
+        assertEquals(results.get(4).getOutput(), "x=5\n");
+        assertTrue(results.get(4).isSuccess());
+        
+        try (SessionHolder<ChannelExec> session = new SessionHolder<>(ChannelType.EXEC, URI.create(remoteUri))) {
+            results = BatchUtils.executeBatch(session, PASS, sudoCmd, "tester@localhost:", "batch> ", "/",
+                    batchCmds, true);
+        }
+        assertEquals(results.size(), 2);
+        assertEquals(results.get(1).getExitStatus(), 1);
+        
+        results = BatchUtils.executeBatch(USER, PASS, "localhost:" + port, null, "", batchCmds, true);
+        assertEquals(results.size(), 2);
+        assertEquals(results.get(0).getOutput(), "one\n");
+        assertEquals(results.get(1).getExitStatus(), 1);
+    }
+
+    @Test
+    public void testPipelinedExec() {
+        String remoteUri = String.format("ssh://%s:%s@localhost:%d/tmp", USER, PASS, port);
+        System.setProperty(RemoteSettings.SSH_KEY_NAME.key(), this.clientPrivateKeyPath.toString());
+        List<String> commands = Arrays.asList("pwd", "echo oops >&2; exit 3", "printf 'no newline'",
+                "X=5; echo \"x=$X\" # comment", "echo \"x=$X\"; cat");
+        List<ExecResult> results = SshUtils.execPipelined(remoteUri, commands);
+        assertEquals(results.size(), 5);
+        assertEquals(results.get(0).getOutput(), "/tmp\n");
+        assertEquals(results.get(0).getErrorOutput(), "");
+        assertEquals(results.get(1).getOutput(), "");
+        assertEquals(results.get(1).getErrorOutput(), "oops\n");
+        assertEquals(results.get(1).getExitStatus(), 3);
+        assertTrue(results.get(1).getException() instanceof RemoteExecutionFailedException);
+        assertEquals(results.get(2).getOutput(), "no newline");
+        assertEquals(results.get(3).getOutput(), "x=5\n");
+        // each command runs in its own subshell, with no input
+        assertEquals(results.get(4).getOutput(), "x=\n");
+        assertTrue(results.get(4).isSuccess());
+    }
+
+    @Test
+    public void testTunnelManager() throws Exception {
+        System.setProperty(RemoteSettings.SSH_KEY_NAME.key(), this.clientPrivateKeyPath.toString());
+        SshServer server = newServer();
+        updateKnownHostsWithActualPort(server.getPort(), hostPair);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try (ServerSocket echo = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+                        TunnelManager tunnels = new TunnelManager(0)) {
+            executor.submit(() -> {
+                while (true) {
+                    Socket socket = echo.accept();
+                    executor.submit(() -> {
+                        try (Socket s = socket) {
+                            IOUtils.copy(s.getInputStream(), s.getOutputStream());
+                        }
+                        return null;
+                    });
+                }
+            });
+            
+            URI uri = URI.create(String.format("ssh://%s:%s@localhost:%d", USER, PASS, server.getPort()));
+            TunnelManager.Tunnel local = tunnels.forwardLocal(uri, 0, "127.0.0.1", echo.getLocalPort());
+            int remotePort;
+            try (ServerSocket probe = new ServerSocket(0)) {
+                remotePort = probe.getLocalPort();
+            }
+            TunnelManager.Tunnel remote = tunnels.forwardRemote(uri, remotePort, "127.0.0.1", echo.getLocalPort());
+            assertEquals(tunnels.getTunnels().size(), 2);
+            
+            assertEquals(roundTrip(local.getListenPort(), "hello"), "hello");
+            assertEquals(roundTrip(remotePort, "world"), "world");
+            assertEquals(local.getConnections(), 1);
+            assertEquals(local.getBytesRead(), 6);
+            assertEquals(local.getBytesWritten(), 6);
+            assertEquals(remote.getConnections(), 1);
+            assertEquals(remote.getBytesWritten(), 6);
+            
+            // drop the shared session; both tunnels are restarted on their original ports
+            server.getActiveSessions().forEach(session -> session.close(true));
+            assertTrue(SessionHolder.awaitCondition(() -> tunnels.checkTunnels() == 2, 100, 10000));
+            assertEquals(local.getRestarts(), 1);
+            assertEquals(remote.getRestarts(), 1);
+            assertEquals(roundTrip(local.getListenPort(), "again"), "again");
+            assertEquals(roundTrip(remotePort, "again"), "again");
+            assertEquals(local.getConnections(), 2);
+            
+            local.close();
+            assertEquals(tunnels.getTunnels().size(), 1);
+        } finally {
+            executor.shutdownNow();
+            server.stop(true);
+        }
+    }
+    
+    private static String roundTrip(int port, String text) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setSoTimeout(10000);
+            socket.getOutputStream().write((text + "\n").getBytes(StandardCharsets.US_ASCII));
+            return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII))
+                    .readLine();
+        }
+    }
+
+    @Test
+    public void testStreamingExec() {
+        String remoteUri = String.format("ssh://%s:%s@localhost:%d", USER, PASS, port);
+        System.setProperty(RemoteSettings.SSH_KEY_NAME.key(), this.clientPrivateKeyPath.toString());
+        
+        AtomicLong lineCount = new AtomicLong();
+        List<String> errors = new ArrayList<>();
+        SshUtils.exec(remoteUri, "seq 1 100000; echo done 1>&2", (type, line) -> {
+            if (type == StreamType.STDOUT) {
+                lineCount.incrementAndGet();
+            } else {
+                errors.add(line);
+            }
+        });
+        assertEquals(lineCount.get(), 100000L);
+        assertEquals(errors, Collections.singletonList("done"));
+        
+        try (Stream<String> lines = SshUtils.execLines(remoteUri, "seq 1 100000")) {
+            assertEquals(lines.mapToLong(Long::parseLong).sum(), 5000050000L);
+        }
+        
+        try {
+            SshUtils.exec(remoteUri, "echo oops 1>&2; exit 3", new ByteArrayOutputStream(), new ByteArrayOutputStream());
+            fail("Expected remote execution to fail");
+        } catch (RemoteExecutionFailedException e) {
+            assertEquals(e.getExitStatus(), 3);
+        }
+    }
+    
+    @Test
+    public void testHeavyStderrCapture() {
+        String remoteUri = String.format("ssh://%s:%s@localhost:%d", USER, PASS, port);
+        System.setProperty(RemoteSettings.SSH_KEY_NAME.key(), this.clientPrivateKeyPath.toString());
+        try {
+            SshUtils.exec(remoteUri, "echo first 1>&2; seq 1 200000 1>&2; echo last 1>&2; exit 4");
+            fail("Expected remote execution to fail");
+        } catch (RemoteExecutionFailedException e) {
+            String stderr = e.getTaskOutput();
+            assertEquals(e.getExitStatus(), 4);
+            assertTrue(stderr.startsWith("first"), "Expected head of standard error to be retained");
+            assertTrue(stderr.trim().endsWith("last"), "Expected tail of standard error to be retained");
+            assertTrue(stderr.contains("bytes omitted"), "Expected omission marker");
+            assertTrue(stderr.length() < 17000, "Expected bounded standard error capture");
+        }
+    }
+
+    @Test
+    public void testFanOutExec() throws Exception {
+        System.setProperty(RemoteSettings.SSH_KEY_NAME.key(), this.clientPrivateKeyPath.toString());
+        List<SshServer> servers = new ArrayList<>();
+        try {
+            List<Integer> ports = new ArrayList<>(Collections.singletonList(port));
+            for (int i = 0; i < 3; i++) {
+                SshServer server = newServer();
+                servers.add(server);
+                ports.add(server.getPort());
+                updateKnownHostsWithActualPort(server.getPort(), hostPair);
+            }
+            List<URI> hosts = new ArrayList<>();
+            for (int i = 0; i < 24; i++) {
+                hosts.add(URI.create(String.format("ssh://%s:%s@localhost:%d", USER, PASS, ports.get(i % ports.size()))));
+            }
+
+            long start = System.nanoTime();
+            long hostMillis = 0;
+            try (Stream<ExecResult> results = SshUtils.execAll(hosts, "sleep 0.2; echo done",
+                            new ExecOptions().setConcurrency(8))) {
+                for (ExecResult result : (Iterable<ExecResult>) results::iterator) {
+                    assertTrue(result.isSuccess(), "Unexpected failure: " + result);
+                    assertEquals(result.getOutput(), "done");
+                    hostMillis += result.getTotalMillis();
+                }
+            }
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            Reporter.log("Fan-out across " + hosts.size() + " hosts: " + elapsed + " ms (" + hostMillis
+                            + " ms total host time)");
+            assertTrue(elapsed * 3 < hostMillis, "Expected concurrent execution across hosts");
+
+            // fail-fast mode throws the first failure
+            try (Stream<ExecResult> results = SshUtils.execAll(hosts, "exit 5",
+                            new ExecOptions().setConcurrency(2).setFailFast(true))) {
+                results.count();
+                fail("Expected fan-out to fail fast");
+            } catch (RemoteExecutionFailedException e) {
+                assertEquals(e.getExitStatus(), 5);
+            }
+
+            // collect-all mode reports failures as results
+            URI deadHost = URI.create(String.format("ssh://%s:%s@localhost:%d", USER, PASS, servers.get(0).getPort()));
+            servers.remove(0).stop(true);
+            List<URI> mixed = Arrays.asList(hosts.get(0), deadHost, hosts.get(2));
+            try (Stream<ExecResult> results = SshUtils.execAll(mixed, "echo done")) {
+                assertEquals(results.filter(result -> !result.isSuccess()).count(), 1L);
+            }
+        } finally {
+            for (SshServer server : servers) {
+                server.stop(true);
+            }
+        }
+    }
+
+    @Test
+    public void testAsyncExec() throws Exception {
+        String remoteUri = String.format("ssh://%s:%s@localhost:%d", USER, PASS, port);
+        System.setProperty(RemoteSettings.SSH_KEY_NAME.key(), this.clientPrivateKeyPath.toString());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CompletableFuture<String> first = SshUtils.execAsync(remoteUri, "echo one", executor);
+            CompletableFuture<String> second = SshUtils.execAsync(remoteUri, "echo two", executor);
+            assertEquals(first.thenCombine(second, (a, b) -> a + b).get(10, TimeUnit.SECONDS), "onetwo");
+
+            // cancellation disconnects the channel, releasing the executor thread
+            CompletableFuture<String> sleeper = SshUtils.execAsync(remoteUri, "sleep 30", executor);
+            Thread.sleep(500);
+            assertTrue(sleeper.cancel(true));
+            assertEquals(SshUtils.execAsync(remoteUri, "echo after", executor).get(10, TimeUnit.SECONDS), "after");
+
+            CompletableFuture<String> failed = SshUtils.execAsync(remoteUri, "exit 6", executor);
+            try {
+                failed.get(10, TimeUnit.SECONDS);
+                fail("Expected remote execution to fail");
+            } catch (ExecutionException e) {
+                assertEquals(((RemoteExecutionFailedException) e.getCause()).getExitStatus(), 6);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testAsyncSftpCancel() throws Exception {
+        byte[] content = new byte[64_000_000];
+        new Random(5).nextBytes(content);
+        Path localRoot = Files.createTempDirectory("sftp-cancel");
+        Path localFile = localRoot.resolve("cancel.bin");
+        Files.write(localFile, content);
+        String remoteUri = String.format("ssh://%s:%s@localhost:%d", USER, PASS, port);
+        System.setProperty(RemoteSettings.SSH_KEY_NAME.key(), this.clientPrivateKeyPath.toString());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CountDownLatch started = new CountDownLatch(1);
+            TransferOptions options = new TransferOptions().setProgressInterval(0).setListener(progress -> {
+                started.countDown();
+                return true;
+            });
+            CompletableFuture<TransferResult> upload =
+                    SshUtils.sftpAsync(localFile.toUri().toString(), remoteUri, options, executor);
+            assertTrue(started.await(10, TimeUnit.SECONDS), "Expected transfer to start");
+
+            // cancellation disconnects the transfer channels, releasing the executor thread
+            assertTrue(upload.cancel(true));
+            assertEquals(CompletableFuture.supplyAsync(() -> "after", executor).get(10, TimeUnit.SECONDS), "after");
+        } finally {
+            executor.shutdownNow();
+            recursiveDelete(localRoot);
+            Files.deleteIfExists(mockRemoteRoot.resolve("cancel.bin"));
+        }
+    }
+
+    @Test(groups = "benchmark")
+    public void benchmarkExecCompletionLatency() {
+        URI remoteUri = URI.create(String.format("ssh://%s:%s@localhost:%d", USER, PASS, port));
+        System.setProperty(RemoteSettings.SSH_KEY_NAME.key(), this.clientPrivateKeyPath.toString());
+        try (RemoteHost host = new RemoteHost(remoteUri)) {
+            // warm up
+            host.exec("echo 'Remote-Session-Test'");
+            int iterations = 20;
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                host.exec("echo 'Remote-Session-Test'");
+            }
+            long average = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) / iterations;
+            Reporter.log("Average exec round trip: " + average + " ms");
+            // polling implementation incurred at least one 100 ms check interval per command
+            assertTrue(average < 50, "Average exec round trip too slow: " + average + " ms");
+        }
+    }
+
+    @Test(groups = "benchmark")
+    public void benchmarkVirtualThreads() throws Exception {
+        ExecutorService virtual = newVirtualThreadExecutor();
+        if (virtual == null) {
+            throw new SkipException("Virtual threads require Java 21+");
+        }
+        int commands = Integer.getInteger("benchmark.commands", 10000);
+        int platformThreads = Integer.getInteger("benchmark.platform.threads", 1000);
+        int sessions = 20;
+        
+        URI remoteUri = URI.create(String.format("ssh://%s:%s@localhost:%d", USER, PASS, port));
+        System.setProperty(RemoteSettings.SSH_KEY_NAME.key(), this.clientPrivateKeyPath.toString());
+        List<RemoteHost> hosts = new ArrayList<>();
+        ExecutorService platform = Executors.newFixedThreadPool(platformThreads);
+        try {
+            for (int i = 0; i < sessions; i++) {
+                hosts.add(new RemoteHost(remoteUri, Collections.singletonMap("StrictHostKeyChecking", "no"),
+                                (commands + sessions - 1) / sessions));
+            }
+            // warm up
+            runConcurrently(hosts, sessions * 10, virtual);
+            
+            long platformMillis = runConcurrently(hosts, commands, platform);
+            long virtualMillis = runConcurrently(hosts, commands, virtual);
+            Reporter.log(String.format("%d concurrent remote commands: %d platform threads = %d ms; "
+                            + "virtual threads = %d ms", commands, platformThreads, platformMillis, virtualMillis));
+        } finally {
+            hosts.forEach(RemoteHost::close);
+            platform.shutdownNow();
+            virtual.shutdownNow();
+        }
+    }
+    
+    @Test(groups = "benchmark")
+    public void benchmarkCompression() throws Exception {
+        // compressible log-style text, about 3:1 with zlib
+        Random random = new Random(3);
+        String[] levels = { "INFO", "DEBUG", "WARN", "ERROR" };
+        StringBuilder log = new StringBuilder();
+        while (log.length() < 16_000_000) {
+            log.append(String.format("2026-01-%02d 12:%02d:%02d.%03d [worker-%d] %s com.example.service.Handler - "
+                    + "request %08x completed in %d ms (status %d)%n", random.nextInt(28) + 1, random.nextInt(60),
+                    random.nextInt(60), random.nextInt(1000), random.nextInt(16), levels[random.nextInt(4)],
+                    random.nextInt(), random.nextInt(5000), 200 + random.nextInt(4) * 100));
+        }
+        byte[] content = log.toString().getBytes(StandardCharsets.UTF_8);
+        System.setProperty(RemoteSettings.SSH_KEY_NAME.key(), this.clientPrivateKeyPath.toString());
+        Path downloadRoot = Files.createTempDirectory("sftp-compression");
+        try {
+            Reporter.log("Link MB/s | none MB/s | zlib MB/s");
+            for (int megabytes : new int[] { 1, 2, 4, 8, 16, 32, 64, 0 }) {
+                // about 4 seconds of uncompressed transfer at each simulated bandwidth
+                int size = (megabytes == 0) ? content.length : Math.min(content.length, megabytes * 4_000_000);
+                Files.write(mockRemoteRoot.resolve("bench.log"), Arrays.copyOf(content, size));
+                try (ThrottlingProxy proxy = new ThrottlingProxy(port, megabytes * 1_000_000L)) {
+                    updateKnownHostsWithActualPort(proxy.getPort(), hostPair);
+                    String remoteUri = String.format("ssh://%s:%s@localhost:%d%s", USER, PASS, proxy.getPort(),
+                            mockRemoteRoot.resolve("bench.log"));
+                    double[] rates = new double[2];
+                    String[] modes = { "none", "zlib" };
+                    for (int i = 0; i < modes.length; i++) {
+                        System.setProperty(RemoteSettings.SESSION_COMPRESSION.key(), modes[i]);
+                        TransferResult result = SshUtils.sftp(remoteUri, downloadRoot.toUri().toString(),
+                                new TransferOptions().setChannels(1));
+                        rates[i] = result.getBytesPerSecond() / 1e6;
+                    }
+                    Reporter.log(String.format("%9s | %9.2f | %9.2f", (megabytes == 0) ? "unlimited"
+                            : String.valueOf(megabytes), rates[0], rates[1]));
+                }
+            }
+        } finally {
+            System.clearProperty(RemoteSettings.SESSION_COMPRESSION.key());
+            CompressionPolicy.reset();
+            Files.deleteIfExists(mockRemoteRoot.resolve("bench.log"));
+            recursiveDelete(downloadRoot);
+        }
+    }
+
+    /**
+     * TCP proxy to the mock SSH server that limits the bandwidth of each direction of each connection.
+     */
+    private static class ThrottlingProxy implements Closeable {
+        private final ServerSocket listener = new ServerSocket(0);
+        private final List<Socket> sockets = Collections.synchronizedList(new ArrayList<>());
+
+        ThrottlingProxy(int targetPort, long bytesPerSecond) throws IOException {
+            Thread acceptor = new Thread(() -> {
+                try {
+                    while (true) {
+                        Socket client = listener.accept();
+                        Socket server = new Socket("localhost", targetPort);
+                        client.setTcpNoDelay(true);
+                        server.setTcpNoDelay(true);
+                        sockets.add(client);
+                        sockets.add(server);
+                        throttle(client.getInputStream(), server.getOutputStream(), bytesPerSecond);
+                        throttle(server.getInputStream(), client.getOutputStream(), bytesPerSecond);
+                    }
+                } catch (IOException e) {
+                    // listener closed
+                }
+            }, "throttling-proxy");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int getPort() {
+            return listener.getLocalPort();
+        }
+
+        private static void throttle(InputStream in, OutputStream out, long bytesPerSecond) {
+            Thread pump = new Thread(() -> {
+                byte[] buffer = new byte[16384];
+                long start = System.nanoTime();
+                long total = 0;
+                try {
+                    int count;
+                    while ((count = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, count);
+                        out.flush();
+                        total += count;
+                        if (bytesPerSecond > 0) {
+                            long ahead = total * 1_000_000_000L / bytesPerSecond - (System.nanoTime() - start);
+                            if (ahead > 0) {
+                                TimeUnit.NANOSECONDS.sleep(ahead);
+                            }
+                        }
+                    }
+                } catch (IOException | InterruptedException e) {
+                    // connection closed
+                } finally {
+                    try {
+                        out.close();
+                    } catch (IOException e) {
+                        // ignore
+                    }
+                }
+            }, "throttling-proxy-pump");
+            pump.setDaemon(true);
+            pump.start();
+        }
+
+        @Override
+        public void close() throws IOException {
+            listener.close();
+            synchronized (sockets) {
+                for (Socket socket : sockets) {
+                    socket.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Run the specified number of 200 ms remote commands on the specified executor, spread across the specified hosts.
+     */
+    private static long runConcurrently(List<RemoteHost> hosts, int commands, ExecutorService executor) {
+        long start = System.nanoTime();
+        List<CompletableFuture<String>> results = new ArrayList<>(commands);
+        for (int i = 0; i < commands; i++) {
+            RemoteHost host = hosts.get(i % hosts.size());
+            results.add(CompletableFuture.supplyAsync(() -> host.exec(SLEEP_COMMAND + 200), executor));
+        }
+        for (CompletableFuture<String> result : results) {
+            assertEquals(result.join(), "done");
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+    
+    /**
+     * Create a virtual-thread-per-task executor via reflection, since this test compiles for Java 8.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+    
     @Test
     public void testSftpUpload() throws IOException {
         Path localPath = Files.createTempFile("sftp-test", ".txt");
@@ -171,6 +955,487 @@ public class SshUtilsTest {
         
         Files.deleteIfExists(localPath);
     }
+
+    @Test
+    public void testSegmentedDownload() throws IOException {
+        byte[] content = new byte[1_000_000];
+        new Random(42).nextBytes(content);
+        Path remoteFile = mockRemoteRoot.resolve("segmented.bin");
+        Files.write(remoteFile, content);
+        Path downloadRoot = Files.createTempDirectory("sftp-segmented");
+        try {
+            String remoteUri = String.format("ssh://%s:%s@localhost:%d%s", USER, PASS, port,
+                    mockRemoteRoot.resolve("segmented.bin"));
+            System.setProperty(RemoteSettings.SSH_KEY_NAME.key(), this.clientPrivateKeyPath.toString());
+            // 1,000,000 bytes in 65,536-byte segments: 15 full segments and a partial one
+            TransferOptions options = new TransferOptions().setChannels(4).setSegmentSize(65536);
+
+            TransferResult result = SshUtils.sftp(remoteUri, downloadRoot.toUri().toString(), options);
+            assertEquals(result.getFiles(), 1L);
+            assertEquals(result.getBytes(), (long) content.length);
+            assertTrue(Arrays.equals(Files.readAllBytes(downloadRoot.resolve("segmented.bin")), content),
+                    "Segmented download doesn't match the remote file");
+        } finally {
+            recursiveDelete(downloadRoot);
+            Files.deleteIfExists(remoteFile);
+        }
+    }
+
+    @Test
+    public void testSegmentedVerifiedDownload() throws IOException {
+        // verification runs 'sha256sum' on the remote host
+        requireCommand("sha256sum");
+        byte[] content = new byte[8_000_000];
+        new Random(43).nextBytes(content);
+        Path remoteFile = mockRemoteRoot.resolve("verified.bin");
+        Files.write(remoteFile, content);
+        Path downloadRoot = Files.createTempDirectory("sftp-verified");
+        try {
+            String remoteUri = String.format("ssh://%s:%s@localhost:%d%s", USER, PASS, port,
+                    mockRemoteRoot.resolve("verified.bin"));
+            System.setProperty(RemoteSettings.SSH_KEY_NAME.key(), this.clientPrivateKeyPath.toString());
+            // 8,000,000 bytes in 1 MiB segments, checked against the remote checksum once assembled
+            TransferOptions options = new TransferOptions().setChannels(4).setSegmentSize(1 << 20).setVerify(true);
+
+            TransferResult result = SshUtils.sftp(remoteUri, downloadRoot.toUri().toString(), options);
+            assertEquals(result.getFiles(), 1L);
+            // a checksum mismatch would have forced a full retransfer
+            assertEquals(result.getBytes(), (long) content.length);
+            assertTrue(Arrays.equals(Files.readAllBytes(downloadRoot.resolve("verified.bin")), content),
+                    "Verified segmented download doesn't match the remote file");
+        } finally {
+            recursiveDelete(downloadRoot);
+            Files.deleteIfExists(remoteFile);
+        }
+    }
+
+    @Test
+    public void testResumableTransfer() throws IOException {
+        // verification runs 'sha256sum' on the remote host
+        requireCommand("sha256sum");
+        byte[] content = new byte[300_000];
+        new Random(7).nextBytes(content);
+        Path localRoot = Files.createTempDirectory("sftp-resume");
+        Path localFile = localRoot.resolve("resume.bin");
+        Path remoteFile = mockRemoteRoot.resolve("resume.bin");
+        Files.write(localFile, content);
+        try {
+            String remoteUri = String.format("ssh://%s:%s@localhost:%d", USER, PASS, port);
+            System.setProperty(RemoteSettings.SSH_KEY_NAME.key(), this.clientPrivateKeyPath.toString());
+            TransferOptions options = new TransferOptions().setResume(true).setVerify(true);
+
+            // partial upload: only the missing bytes are sent
+            Files.write(remoteFile, Arrays.copyOf(content, 100_000));
+            TransferResult result = SshUtils.sftp(localFile.toUri().toString(), remoteUri, options);
+            assertEquals(result.getBytes(), 200_000L);
+            assertTrue(Arrays.equals(Files.readAllBytes(remoteFile), content), "Resumed upload doesn't match");
+
+            // stale partial upload: checksum mismatch forces a full transfer
+            Files.write(remoteFile, new byte[50_000]);
+            result = SshUtils.sftp(localFile.toUri().toString(), remoteUri, options);
+            assertEquals(result.getBytes(), 250_000L + 300_000L);
+            assertTrue(Arrays.equals(Files.readAllBytes(remoteFile), content), "Replaced upload doesn't match");
+
+            // partial target older than its source: treated as stale, even without verification
+            Files.write(remoteFile, new byte[50_000]);
+            Files.setLastModifiedTime(remoteFile, FileTime.fromMillis(TimeUnit.DAYS.toMillis(10000)));
+            result = SshUtils.sftp(localFile.toUri().toString(), remoteUri, new TransferOptions().setResume(true));
+            assertEquals(result.getBytes(), 300_000L);
+            assertTrue(Arrays.equals(Files.readAllBytes(remoteFile), content), "Replaced upload doesn't match");
+
+            // partial download: only the missing bytes are fetched
+            Files.write(localFile, Arrays.copyOf(content, 120_000));
+            result = SshUtils.sftp(remoteUri + remoteFile, localRoot.toUri().toString(), options);
+            assertEquals(result.getBytes(), 180_000L);
+            assertTrue(Arrays.equals(Files.readAllBytes(localFile), content), "Resumed download doesn't match");
+        } finally {
+            recursiveDelete(localRoot);
+            Files.deleteIfExists(remoteFile);
+        }
+    }
+
+    @Test
+    public void testDeltaUpload() throws IOException {
+        // delta upload falls back to a full upload if the remote host can't run its helper script
+        requireCommand("python3");
+        Random random = new Random(11);
+        byte[] original = new byte[2_000_000];
+        random.nextBytes(original);
+        // insert 100 bytes, overwrite 1000 bytes, and append 3000 bytes
+        byte[] inserted = new byte[100];
+        random.nextBytes(inserted);
+        ByteArrayOutputStream modified = new ByteArrayOutputStream();
+        modified.write(original, 0, 500_000);
+        modified.write(inserted);
+        modified.write(original, 500_000, original.length - 500_000);
+        byte[] appended = new byte[3000];
+        random.nextBytes(appended);
+        modified.write(appended);
+        byte[] content = modified.toByteArray();
+        Arrays.fill(content, 1_500_000, 1_501_000, (byte) 0);
+
+        Path localRoot = Files.createTempDirectory("sftp-delta");
+        Path localFile = localRoot.resolve("delta.bin");
+        Path remoteFile = mockRemoteRoot.resolve("delta.bin");
+        Files.write(localFile, content);
+        Files.write(remoteFile, original);
+        try {
+            String remoteUri = String.format("ssh://%s:%s@localhost:%d", USER, PASS, port);
+            System.setProperty(RemoteSettings.SSH_KEY_NAME.key(), this.clientPrivateKeyPath.toString());
+            TransferResult result = SshUtils.sftp(localFile.toUri().toString(), remoteUri,
+                    new TransferOptions().setDelta(true));
+            assertTrue(Arrays.equals(Files.readAllBytes(remoteFile), content), "Rebuilt file doesn't match");
+            assertTrue(result.getBytes() < content.length / 50, "Expected delta to be a small fraction of the file");
+            assertTrue(!Files.exists(mockRemoteRoot.resolve("delta.bin.delta")), "Expected delta file to be removed");
+        } finally {
+            recursiveDelete(localRoot);
+            Files.deleteIfExists(remoteFile);
+        }
+    }
+
+    @Test
+    public void testSessionCompression() throws Exception {
+        System.setProperty(RemoteSettings.SSH_KEY_NAME.key(), this.clientPrivateKeyPath.toString());
+        SshServer server = newServer();
+        updateKnownHostsWithActualPort(server.getPort(), hostPair);
+        URI uri = URI.create(String.format("ssh://%s:%s@localhost:%d", USER, PASS, server.getPort()));
+        try {
+            System.setProperty(RemoteSettings.SESSION_COMPRESSION.key(), "zlib");
+            try (RemoteHost host = new RemoteHost(uri)) {
+                assertEquals(host.exec("seq 1 20000 | tail -n 1"), "20000");
+                assertEquals(getCompression(server), "zlib");
+            }
+
+            // adaptive: no compression until the link has been measured
+            System.setProperty(RemoteSettings.SESSION_COMPRESSION.key(), CompressionPolicy.ADAPTIVE);
+            CompressionPolicy.reset();
+            try (RemoteHost host = new RemoteHost(uri)) {
+                host.exec("true");
+                assertEquals(getCompression(server), "none");
+            }
+            // a slow link (1 MB/s) enables compression for this host
+            CompressionPolicy.record("localhost", server.getPort(), 1048576, 1000);
+            try (RemoteHost host = new RemoteHost(uri)) {
+                host.exec("true");
+                assertTrue(getCompression(server).startsWith("zlib"), "Expected compression on slow link");
+            }
+            // a fast link (1 GB/s) doesn't
+            CompressionPolicy.record("localhost", server.getPort(), 1073741824, 1000);
+            try (RemoteHost host = new RemoteHost(uri)) {
+                host.exec("true");
+                assertEquals(getCompression(server), "none");
+            }
+        } finally {
+            System.clearProperty(RemoteSettings.SESSION_COMPRESSION.key());
+            CompressionPolicy.reset();
+            server.stop(true);
+        }
+    }
+
+    @Test
+    public void testAlgorithmProfiles() throws Exception {
+        System.setProperty(RemoteSettings.SSH_KEY_NAME.key(), this.clientPrivateKeyPath.toString());
+        SshServer server = newServer();
+        updateKnownHostsWithActualPort(server.getPort(), hostPair);
+        URI uri = URI.create(String.format("ssh://%s:%s@localhost:%d", USER, PASS, server.getPort()));
+        try {
+            System.setProperty(RemoteSettings.SSH_ALGORITHM_PROFILE.key(), "throughput");
+            try (RemoteHost host = new RemoteHost(uri)) {
+                host.exec("true");
+                assertEquals(getKexParameter(server, KexProposalOption.S2CENC), "aes128-gcm@openssh.com");
+            }
+
+            System.setProperty(RemoteSettings.SSH_ALGORITHM_PROFILE.key(), "low-latency-handshake");
+            try (RemoteHost host = new RemoteHost(uri)) {
+                host.exec("true");
+                assertEquals(getKexParameter(server, KexProposalOption.ALGORITHMS), "curve25519-sha256");
+                assertEquals(getKexParameter(server, KexProposalOption.SERVERKEYS), "rsa-sha2-256");
+            }
+
+            // explicit lists override the profile
+            System.setProperty(RemoteSettings.SSH_ALGORITHM_PROFILE.key(), "compat");
+            System.setProperty(RemoteSettings.SSH_CIPHERS.key(), "aes256-ctr, aes128-ctr");
+            System.setProperty(RemoteSettings.SSH_MACS.key(), "hmac-sha2-512");
+            try (RemoteHost host = new RemoteHost(uri)) {
+                host.exec("true");
+                assertEquals(getKexParameter(server, KexProposalOption.S2CENC), "aes256-ctr");
+                assertEquals(getKexParameter(server, KexProposalOption.S2CMAC), "hmac-sha2-512");
+            }
+
+            System.setProperty(RemoteSettings.SSH_ALGORITHM_PROFILE.key(), "fastest");
+            IllegalArgumentException e = expectThrows(IllegalArgumentException.class,
+                    () -> new RemoteHost(uri).close());
+            assertTrue(e.getMessage().contains("fastest"));
+        } finally {
+            System.clearProperty(RemoteSettings.SSH_ALGORITHM_PROFILE.key());
+            System.clearProperty(RemoteSettings.SSH_CIPHERS.key());
+            System.clearProperty(RemoteSettings.SSH_MACS.key());
+            server.stop(true);
+        }
+    }
+
+    private static String getKexParameter(SshServer server, KexProposalOption option) {
+        return server.getActiveSessions().get(0).getNegotiatedKexParameter(option);
+    }
+
+    private static String getCompression(SshServer server) {
+        return server.getActiveSessions().get(0).getNegotiatedKexParameter(KexProposalOption.S2CCOMP);
+    }
+
+    @Test
+    public void testTransferProgress() throws IOException {
+        byte[] content = new byte[3_000_000];
+        new Random(5).nextBytes(content);
+        Path localRoot = Files.createTempDirectory("sftp-progress");
+        Path localFile = localRoot.resolve("progress.bin");
+        Files.write(localFile, content);
+        try {
+            String remoteUri = String.format("ssh://%s:%s@localhost:%d", USER, PASS, port);
+            System.setProperty(RemoteSettings.SSH_KEY_NAME.key(), this.clientPrivateKeyPath.toString());
+            List<TransferProgress> updates = Collections.synchronizedList(new ArrayList<>());
+            SshUtils.sftp(localFile.toUri().toString(), remoteUri, new TransferOptions()
+                    .setProgressInterval(0).setListener(updates::add));
+            TransferProgress last = updates.get(updates.size() - 1);
+            assertTrue(updates.size() > 1, "Expected intermediate progress updates");
+            assertTrue(last.isComplete(), "Expected final update to be complete");
+            assertEquals(last.getBytes(), (long) content.length);
+            assertEquals(last.getTotalBytes(), (long) content.length);
+            assertEquals(last.getRemainingMillis(), 0L);
+
+            // cancel from the listener
+            try {
+                SshUtils.sftp(localFile.toUri().toString(), remoteUri, new TransferOptions()
+                        .setProgressInterval(0).setListener(progress -> progress.getBytes() == 0));
+                fail("Expected transfer to be cancelled");
+            } catch (RemoteFileUploadFailedException e) {
+                assertTrue(e.getCause() instanceof CancellationException, "Expected cancellation: " + e.getCause());
+            }
+        } finally {
+            recursiveDelete(localRoot);
+            Files.deleteIfExists(mockRemoteRoot.resolve("progress.bin"));
+        }
+    }
+
+    @Test
+    public void testMetrics() throws IOException {
+        Path localFile = Files.createTempFile("metrics", ".bin");
+        Files.write(localFile, new byte[200_000]);
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        RemoteMetrics.setRecorder(metrics);
+        try {
+            String remoteUri = String.format("ssh://%s:%s@localhost:%d", USER, PASS, port);
+            String host = "localhost:" + port;
+            System.setProperty(RemoteSettings.SSH_KEY_NAME.key(), this.clientPrivateKeyPath.toString());
+            assertEquals(SshUtils.exec(remoteUri, "echo 'Remote-Session-Test'"), "Remote-Session-Test");
+            SshUtils.sftp(localFile.toUri().toString(), remoteUri, new TransferOptions());
+            
+            assertTrue(metrics.getHistogram(Phase.CONNECT, host, null).getCount() >= 2, "Expected TCP connects");
+            assertTrue(metrics.getHistogram(Phase.HANDSHAKE, host, null).getCount() >= 2, "Expected handshakes");
+            assertEquals(metrics.getHistogram(Phase.CHANNEL_OPEN, host, ChannelType.EXEC).getCount(), 1L);
+            assertEquals(metrics.getHistogram(Phase.COMMAND, host, ChannelType.EXEC).getCount(), 1L);
+            assertEquals(metrics.getHistogram(Phase.DRAIN, host, ChannelType.EXEC).getCount(), 1L);
+            assertTrue(metrics.getHistogram(Phase.CHANNEL_OPEN, host, ChannelType.SFTP).getCount() >= 1);
+            assertEquals(metrics.getHistogram(Phase.TRANSFER, host, ChannelType.SFTP).getCount(), 1L);
+            assertEquals(metrics.getFailures(Phase.COMMAND, null, null), 0L);
+            assertTrue(metrics.getBytesOut(host) > 200_000, "Expected upload traffic");
+            assertTrue(metrics.getBytesIn(host) > 0, "Expected download traffic");
+            
+            LatencyHistogram command = metrics.getHistogram(Phase.COMMAND, host, ChannelType.EXEC);
+            assertTrue(command.getMin() <= command.getValueAtPercentile(50));
+            assertTrue(command.getValueAtPercentile(50) <= command.getMax());
+        } finally {
+            RemoteMetrics.setRecorder(null);
+            Files.deleteIfExists(localFile);
+            Files.deleteIfExists(mockRemoteRoot.resolve(localFile.getFileName()));
+        }
+    }
+
+    @Test
+    public void testIdentityCache() throws Exception {
+        String remoteUri = String.format("ssh://%s:%s@localhost:%d", USER, PASS, port);
+        System.setProperty(RemoteSettings.SSH_KEY_NAME.key(), this.clientPrivateKeyPath.toString());
+        IdentityCache.Entry first = IdentityCache.get();
+        assertEquals(SshUtils.exec(remoteUri, "echo 'Remote-Session-Test'"), "Remote-Session-Test");
+        assertSame(IdentityCache.get(), first, "Expected cached identity to be reused");
+        
+        // modifying the private key file invalidates the entry
+        FileTime modified = Files.getLastModifiedTime(clientPrivateKeyPath);
+        Files.setLastModifiedTime(clientPrivateKeyPath, FileTime.fromMillis(modified.toMillis() + 2000));
+        IdentityCache.Entry second = IdentityCache.get();
+        assertNotSame(second, first, "Expected modified key file to invalidate cached identity");
+        assertEquals(SshUtils.exec(remoteUri, "echo 'Remote-Session-Test'"), "Remote-Session-Test");
+        assertSame(IdentityCache.get(), second);
+    }
+
+    @Test
+    public void testKnownHostsRepository() throws Exception {
+        byte[] hostKey = getKeyBlob(hostPair);
+        KeyPairGenerator otherGen = KeyPairGenerator.getInstance("RSA");
+        otherGen.initialize(2048);
+        byte[] otherKey = getKeyBlob(otherGen.generateKeyPair());
+        String encodedKey = Base64.getEncoder().encodeToString(hostKey);
+        
+        // hashed entry: |1|base64(salt)|base64(HMAC-SHA1(salt, host))
+        byte[] salt = new byte[20];
+        new Random(18).nextBytes(salt);
+        Mac mac = Mac.getInstance("HmacSHA1");
+        mac.init(new SecretKeySpec(salt, "HmacSHA1"));
+        String hashedHost = "|1|" + Base64.getEncoder().encodeToString(salt) + "|" + Base64.getEncoder()
+                .encodeToString(mac.doFinal(("[hashed.example.com]:" + port).getBytes(StandardCharsets.UTF_8)));
+        
+        Path knownHosts = Files.createTempFile("known_hosts", "");
+        try {
+            StringBuilder content = new StringBuilder("# managed known hosts\n");
+            for (int i = 0; i < 20_000; i++) {
+                content.append("host").append(i).append(".example.com,10.0.").append(i / 256).append('.')
+                        .append(i % 256).append(" ssh-rsa ").append(encodedKey).append('\n');
+            }
+            content.append(hashedHost).append(" ssh-rsa ").append(encodedKey).append(" hashed\n");
+            Files.write(knownHosts, content.toString().getBytes(StandardCharsets.UTF_8));
+            
+            KnownHostsRepository repository = KnownHostsRepository.forFile(knownHosts);
+            assertSame(KnownHostsRepository.forFile(knownHosts), repository);
+            assertEquals(repository.check("HOST123.example.com", hostKey), HostKeyRepository.OK);
+            assertEquals(repository.check("[10.0.1.44]:2222", hostKey), HostKeyRepository.OK);
+            assertEquals(repository.check("[hashed.example.com]:" + port, hostKey), HostKeyRepository.OK);
+            assertEquals(repository.check("host7.example.com", otherKey), HostKeyRepository.CHANGED);
+            assertEquals(repository.check("unknown.example.com", hostKey), HostKeyRepository.NOT_INCLUDED);
+            assertEquals(repository.getHostKey("[host9.example.com]:22", "ssh-rsa").length, 1);
+            
+            // added keys are appended
+            repository.add(new HostKey("[added.example.com]:2222", otherKey), null);
+            assertEquals(repository.check("[added.example.com]:2222", otherKey), HostKeyRepository.OK);
+            List<String> lines = Files.readAllLines(knownHosts);
+            assertEquals(lines.size(), 20_003);
+            assertTrue(lines.get(lines.size() - 1).startsWith("[added.example.com]:2222 ssh-rsa "));
+            
+            // changed keys are removed
+            repository.remove("host7.example.com", "ssh-rsa", hostKey);
+            assertEquals(repository.check("host7.example.com", hostKey), HostKeyRepository.NOT_INCLUDED);
+            assertEquals(Files.readAllLines(knownHosts).size(), 20_002);
+            
+            // external changes are reloaded
+            Files.write(knownHosts, ("replaced.example.com ssh-rsa " + encodedKey + "\n").getBytes(StandardCharsets.UTF_8));
+            assertEquals(repository.check("host123.example.com", hostKey), HostKeyRepository.NOT_INCLUDED);
+            assertEquals(repository.check("replaced.example.com", hostKey), HostKeyRepository.OK);
+        } finally {
+            Files.deleteIfExists(knownHosts);
+        }
+    }
+
+    @Test
+    public void testSftpDirectoryTree() throws Exception {
+        Path localRoot = Files.createTempDirectory("sftp-tree");
+        Path downloadRoot = Files.createTempDirectory("sftp-download");
+        try {
+            Path tree = localRoot.resolve("tree");
+            long mtime = TimeUnit.DAYS.toMillis(10000);
+            for (int i = 0; i < 40; i++) {
+                Path file = tree.resolve("dir" + (i % 4)).resolve("sub" + (i % 3)).resolve("file" + i + ".txt");
+                Files.createDirectories(file.getParent());
+                Files.write(file, ("content of file " + i).getBytes());
+                Files.setLastModifiedTime(file, FileTime.fromMillis(mtime));
+            }
+            Files.createDirectories(tree.resolve("empty"));
+
+            String remoteUri = String.format("ssh://%s:%s@localhost:%d", USER, PASS, port);
+            System.setProperty(RemoteSettings.SSH_KEY_NAME.key(), this.clientPrivateKeyPath.toString());
+            TransferOptions options = new TransferOptions().setChannels(4).setPreserve(true);
+
+            TransferResult upload = SshUtils.sftp(tree.toUri().toString(), remoteUri, options);
+            assertEquals(upload.getFiles(), 40L);
+            Path remoteTree = mockRemoteRoot.resolve("tree");
+            assertTrue(Files.isDirectory(remoteTree.resolve("empty")), "Expected empty directory to be created");
+            Path remoteFile = remoteTree.resolve("dir1").resolve("sub2").resolve("file5.txt");
+            assertEquals(new String(Files.readAllBytes(remoteFile)), "content of file 5");
+            assertEquals(Files.getLastModifiedTime(remoteFile).toMillis(), mtime);
+
+            TransferResult download = SshUtils.sftp(remoteUri + remoteTree, downloadRoot.toUri().toString(), options);
+            assertEquals(download.getFiles(), 40L);
+            assertEquals(download.getBytes(), upload.getBytes());
+            Path localFile = downloadRoot.resolve("tree").resolve("dir3").resolve("sub0").resolve("file39.txt");
+            assertEquals(new String(Files.readAllBytes(localFile)), "content of file 39");
+            assertEquals(Files.getLastModifiedTime(localFile).toMillis(), mtime);
+
+            // the asynchronous variant transfers directory trees with the same options
+            recursiveDelete(downloadRoot.resolve("tree"));
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                download = SshUtils.sftpAsync(remoteUri + remoteTree, downloadRoot.toUri().toString(), options,
+                        executor).get(30, TimeUnit.SECONDS);
+            } finally {
+                executor.shutdown();
+            }
+            assertEquals(download.getFiles(), 40L);
+            assertEquals(new String(Files.readAllBytes(localFile)), "content of file 39");
+            assertEquals(Files.getLastModifiedTime(localFile).toMillis(), mtime);
+        } finally {
+            recursiveDelete(localRoot);
+            recursiveDelete(downloadRoot);
+            recursiveDelete(mockRemoteRoot.resolve("tree"));
+        }
+    }
+
+    /**
+     * Run the specified command in a local shell rooted at the mock remote file system.
+     */
+    private int runProcess(String command, InputStream in, OutputStream out, OutputStream err)
+                    throws IOException, InterruptedException {
+        Process process = new ProcessBuilder("/bin/sh", "-c", command).directory(mockRemoteRoot.toFile()).start();
+        Thread stdin = pump(in, process.getOutputStream(), true);
+        Thread stdout = pump(process.getInputStream(), out, false);
+        Thread stderr = pump(process.getErrorStream(), err, false);
+        int exitStatus = process.waitFor();
+        stdout.join();
+        stderr.join();
+        stdin.interrupt();
+        return exitStatus;
+    }
+    
+    /**
+     * Skip the current test if the specified command isn't available on the build host, where the mock server runs
+     * "remote" commands.
+     */
+    private static void requireCommand(String command) {
+        boolean found;
+        try {
+            found = new ProcessBuilder("/bin/sh", "-c", "command -v " + command).start().waitFor() == 0;
+        } catch (IOException e) {
+            found = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            found = false;
+        }
+        if (!found) {
+            throw new SkipException("Test requires '" + command + "' on the build host");
+        }
+    }
+    
+    private static Thread pump(InputStream from, OutputStream to, boolean closeTarget) {
+        Thread thread = new Thread(() -> {
+            byte[] buffer = new byte[8192];
+            try {
+                int count;
+                while ((count = from.read(buffer)) != -1) {
+                    to.write(buffer, 0, count);
+                    to.flush();
+                }
+            } catch (IOException e) {
+                // stream closed
+            } finally {
+                if (closeTarget) {
+                    try {
+                        to.close();
+                    } catch (IOException e) {
+                        // ignore
+                    }
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
     
     private void generateClientIdentity() throws Exception {
         Path tempDir = Files.createTempDirectory("ssh_identity");
@@ -199,11 +1464,28 @@ public class SshUtilsTest {
         kpair.dispose();
     }
     
+    private static byte[] getKeyBlob(KeyPair keyPair) throws IOException {
+        // known_hosts keys are in SSH wire format: string "ssh-rsa", mpint e, mpint n
+        RSAPublicKey publicKey = (RSAPublicKey) keyPair.getPublic();
+        ByteArrayOutputStream blob = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(blob)) {
+            for (byte[] field : new byte[][] { "ssh-rsa".getBytes(StandardCharsets.US_ASCII),
+                    publicKey.getPublicExponent().toByteArray(), publicKey.getModulus().toByteArray() }) {
+                out.writeInt(field.length);
+                out.write(field);
+            }
+        }
+        return blob.toByteArray();
+    }
+    
     private void updateKnownHostsWithActualPort(int actualPort, KeyPair hostPair) throws IOException {
         Path knownHostsPath = clientPrivateKeyPath.resolveSibling("known_hosts");
-        String encodedKey = Base64.getEncoder().encodeToString(hostPair.getPublic().getEncoded());
+        String encodedKey = Base64.getEncoder().encodeToString(getKeyBlob(hostPair));
         String entry = String.format("[localhost]:%d ssh-rsa %s%n", actualPort, encodedKey);
-        Files.write(knownHostsPath, entry.getBytes(StandardCharsets.UTF_8));
+        // append, so servers started by individual tests are known too; an unknown or mismatched key makes JSch
+        // rewrite the file, which races with concurrent sessions reading it
+        Files.write(knownHostsPath, entry.getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
         System.out.println("Updated known_hosts for port: " + actualPort);
     }
 }